@@ -0,0 +1,118 @@
+package dev.chanler.knownote.common.async;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AIMD 自适应并发上限
+ * <p>
+ * 调用成功且在途数接近上限时加一；被限流、超时或延迟超过基线的 tolerance 倍时按 backoffRatio 收缩，
+ * 同一 backoffWindow 内最多收缩一次，避免同一波并发失败连乘。
+ * 基线为延迟的慢速 EWMA，上限收缩后已在途的调用不受影响，新调用等待在途数降到上限以下
+ */
+public class AdaptiveLimit {
+
+    private static final double BASELINE_ALPHA = 0.05;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+    private final long backoffWindowNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private double limit;
+    private int inflight;
+    private double baselineNanos;
+    private long lastBackoffNanos;
+    private boolean backedOff;
+
+    public AdaptiveLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio, double latencyTolerance,
+                         long backoffWindowNanos) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.backoffWindowNanos = backoffWindowNanos;
+        this.limit = Math.min(Math.max(initialLimit, this.minLimit), this.maxLimit);
+    }
+
+    public void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            while (inflight >= (int) limit) {
+                available.await();
+            }
+            inflight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release() {
+        lock.lock();
+        try {
+            inflight--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 记录一次调用结果；latencyNanos 为归一化后的延迟，不大于 0 表示没有可比较的延迟；
+     * dropped 表示被限流、超时或服务端过载
+     */
+    public void onSample(long latencyNanos, boolean dropped) {
+        lock.lock();
+        try {
+            if (dropped) {
+                backoff();
+                return;
+            }
+            if (latencyNanos > 0) {
+                boolean slow = baselineNanos > 0 && latencyNanos > baselineNanos * latencyTolerance;
+                baselineNanos = baselineNanos == 0 ? latencyNanos : baselineNanos + BASELINE_ALPHA * (latencyNanos - baselineNanos);
+                if (slow) {
+                    backoff();
+                    return;
+                }
+            }
+            if (inflight * 2 >= (int) limit && limit < maxLimit) {
+                limit = Math.min(maxLimit, limit + 1);
+                available.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void backoff() {
+        long now = System.nanoTime();
+        if (backedOff && now - lastBackoffNanos < backoffWindowNanos) {
+            return;
+        }
+        backedOff = true;
+        lastBackoffNanos = now;
+        limit = Math.max(minLimit, limit * backoffRatio);
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInflight() {
+        lock.lock();
+        try {
+            return inflight;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
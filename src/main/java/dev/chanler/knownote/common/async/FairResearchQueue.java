@@ -0,0 +1,230 @@
+package dev.chanler.knownote.common.async;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按用户公平排队：每个用户一个 FIFO 队列，任务按虚拟完成时间出队
+ * <p>
+ * 完成时间 = max(全局虚拟时间, 该用户上一任务完成时间) + 预算成本（ResearchJob.cost），成本大的任务更晚出队，
+ * 同一用户连续提交的任务依次后移，不会挤占其他用户；用户执行中的任务达到上限时跳过其队列
+ */
+class FairResearchQueue {
+
+    private final int capacity;
+    private final int maxRunningPerUser;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Map<Long, UserQueue> users = new HashMap<>();
+    private double virtualTime;
+    private int size;
+
+    FairResearchQueue(int capacity, int maxRunningPerUser) {
+        this.capacity = capacity;
+        this.maxRunningPerUser = maxRunningPerUser;
+    }
+
+    /**
+     * 入队，返回公平顺序下排在前面的任务数；队列已满返回 -1
+     */
+    int offer(ResearchJob job, Runnable task) {
+        lock.lock();
+        try {
+            if (size >= capacity) {
+                return -1;
+            }
+            Long userId = userKey(job.userId());
+            UserQueue userQueue = users.computeIfAbsent(userId, k -> new UserQueue());
+            double start = Math.max(virtualTime, userQueue.lastFinish);
+            Entry entry = new Entry(job, userId, start, start + Math.max(job.cost(), 1), task);
+            userQueue.lastFinish = entry.finish;
+            userQueue.jobs.addLast(entry);
+            size++;
+            changed.signalAll();
+            return ahead(entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 移除尚未出队的任务；若为该用户队尾则回退其完成时间
+     */
+    boolean remove(String researchId) {
+        lock.lock();
+        try {
+            for (UserQueue userQueue : users.values()) {
+                Entry tail = userQueue.jobs.peekLast();
+                Iterator<Entry> it = userQueue.jobs.iterator();
+                while (it.hasNext()) {
+                    Entry entry = it.next();
+                    if (entry.job.researchId().equals(researchId)) {
+                        it.remove();
+                        size--;
+                        if (entry == tail) {
+                            userQueue.lastFinish = entry.start;
+                        }
+                        changed.signalAll();
+                        return true;
+                    }
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 按公平出队顺序返回当前排队任务的快照
+     */
+    List<ResearchJob> snapshot() {
+        lock.lock();
+        try {
+            List<Entry> entries = new ArrayList<>(size);
+            for (UserQueue userQueue : users.values()) {
+                entries.addAll(userQueue.jobs);
+            }
+            entries.sort(Comparator.comparingDouble(Entry::finish));
+            List<ResearchJob> jobs = new ArrayList<>(entries.size());
+            for (Entry entry : entries) {
+                jobs.add(entry.job);
+            }
+            return jobs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 等待直到存在可出队的任务，不取出
+     */
+    void awaitTakeable() throws InterruptedException {
+        lock.lock();
+        try {
+            while (next() == null) {
+                changed.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 取出完成时间最小且用户未达并发上限的任务，计入该用户的执行数；没有可出队的任务返回 null
+     */
+    Entry poll() {
+        lock.lock();
+        try {
+            Entry next = next();
+            if (next == null) {
+                return null;
+            }
+            UserQueue owner = users.get(next.userId);
+            owner.jobs.pollFirst();
+            owner.running++;
+            size--;
+            virtualTime = Math.max(virtualTime, next.start);
+            return next;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Entry next() {
+        Entry next = null;
+        for (UserQueue userQueue : users.values()) {
+            Entry head = userQueue.jobs.peekFirst();
+            if (head != null && userQueue.running < maxRunningPerUser
+                    && (next == null || head.finish < next.finish)) {
+                next = head;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * 任务结束，释放用户执行数
+     */
+    void release(Entry entry) {
+        lock.lock();
+        try {
+            UserQueue userQueue = users.get(entry.userId);
+            if (userQueue != null) {
+                userQueue.running--;
+            }
+            // 清理空闲且已追上虚拟时间的用户，避免 map 无限增长
+            Iterator<UserQueue> it = users.values().iterator();
+            while (it.hasNext()) {
+                UserQueue candidate = it.next();
+                if (candidate.jobs.isEmpty() && candidate.running <= 0 && candidate.lastFinish <= virtualTime) {
+                    it.remove();
+                }
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 取出全部排队任务，用于下线交接
+     */
+    List<Entry> drainAll() {
+        lock.lock();
+        try {
+            List<Entry> entries = new ArrayList<>(size);
+            for (UserQueue userQueue : users.values()) {
+                entries.addAll(userQueue.jobs);
+                userQueue.jobs.clear();
+            }
+            entries.sort(Comparator.comparingDouble(Entry::finish));
+            size = 0;
+            return entries;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int ahead(Entry entry) {
+        int count = 0;
+        for (UserQueue userQueue : users.values()) {
+            for (Entry other : userQueue.jobs) {
+                if (other != entry && other.finish <= entry.finish) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static Long userKey(Long userId) {
+        return userId == null ? 0L : userId;
+    }
+
+    private static class UserQueue {
+        final ArrayDeque<Entry> jobs = new ArrayDeque<>();
+        double lastFinish;
+        int running;
+    }
+
+    record Entry(ResearchJob job, Long userId, double start, double finish, Runnable task) {
+    }
+}
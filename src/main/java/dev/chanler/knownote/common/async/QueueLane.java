@@ -0,0 +1,9 @@
+package dev.chanler.knownote.common.async;
+
+/**
+ * 任务执行通道：SCOPE 为范围分析快速通道，RESEARCH 为研究任务队列
+ */
+public enum QueueLane {
+    SCOPE,
+    RESEARCH
+}
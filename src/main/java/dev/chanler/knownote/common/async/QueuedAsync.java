@@ -11,4 +11,9 @@ import java.lang.annotation.Target;
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface QueuedAsync {
+
+    /**
+     * 执行通道，默认进入研究任务队列
+     */
+    QueueLane lane() default QueueLane.RESEARCH;
 }
@@ -1,5 +1,6 @@
 package dev.chanler.knownote.common.async;
 
+import dev.chanler.knownote.common.util.CacheUtil;
 import dev.chanler.knownote.common.util.EventPublisher;
 import dev.chanler.knownote.common.util.SequenceUtil;
 import dev.chanler.knownote.common.sse.SseHub;
@@ -17,7 +18,7 @@ import org.aspectj.lang.annotation.Aspect;
 import org.springframework.stereotype.Component;
 
 /**
- * QueuedAsync 注解切面，拦截方法调用并提交到线程池
+ * QueuedAsync 注解切面，拦截方法调用并按通道提交到范围分析快速通道或研究任务队列
  */
 @Aspect
 @Component
@@ -26,32 +27,45 @@ import org.springframework.stereotype.Component;
 public class QueuedAsyncAspect {
 
     private final ResearchTaskExecutor researchTaskExecutor;
+    private final ScopeTaskExecutor scopeTaskExecutor;
     private final ResearchSessionMapper researchSessionMapper;
     private final EventPublisher eventPublisher;
     private final SseHub sseHub;
     private final SequenceUtil sequenceUtil;
     private final ModelHandler modelHandler;
+    private final CacheUtil cacheUtil;
+    private final ResearchRunRegistry researchRunRegistry;
 
-    @Around("@annotation(QueuedAsync)")
-    public Object around(ProceedingJoinPoint joinPoint) throws Throwable {
+    @Around("@annotation(queuedAsync)")
+    public Object around(ProceedingJoinPoint joinPoint, QueuedAsync queuedAsync) throws Throwable {
         Object[] args = joinPoint.getArgs();
         if (args.length == 0 || !(args[0] instanceof DeepResearchState state)) {
             throw new ResearchException("@QueuedAsync 方法的第一个参数必须是 DeepResearchState");
         }
 
         String researchId = state.getResearchId();
-        researchTaskExecutor.submit(researchId, () -> {
+        Runnable task = () -> {
             try {
                 joinPoint.proceed();
             } catch (Throwable e) {
                 log.error("异步任务执行失败，researchId={}", researchId, e);
                 handleFailure(researchId, state, e);
             }
-        });
+        };
+        if (queuedAsync.lane() == QueueLane.SCOPE) {
+            scopeTaskExecutor.submit(researchId, task);
+            return null;
+        }
+        int cost = state.getBudget() != null ? state.getBudget().getCost() : 1;
+        ResearchJob job = new ResearchJob(researchId, state.getUserId(), state.getBudgetName(), state.getModelId(), cost);
+        researchTaskExecutor.submit(job, task);
         return null;
     }
 
-    private void handleFailure(String researchId, DeepResearchState state, Throwable e) {
+    /**
+     * 任务失败收尾：标记失败、推送错误并释放资源
+     */
+    public void handleFailure(String researchId, DeepResearchState state, Throwable e) {
         try {
             state.setStatus(WorkflowStatus.FAILED);
             researchSessionMapper.updateSession(researchId, WorkflowStatus.FAILED,
@@ -62,7 +76,9 @@ public class QueuedAsyncAspect {
             eventPublisher.publishEvent(researchId, EventType.ERROR,
                     "系统错误，请稍后重试", e.getMessage());
 
-            sequenceUtil.reset(researchId);
+            cacheUtil.flush();
+            sequenceUtil.remove(researchId);
+            researchRunRegistry.clearCancel(researchId);
             sseHub.complete(researchId, WorkflowStatus.FAILED);
             modelHandler.removeModel(researchId);
         } catch (Exception cleanupError) {
@@ -0,0 +1,92 @@
+package dev.chanler.knownote.common.async;
+
+import dev.chanler.knownote.common.sse.SseHub;
+import dev.chanler.knownote.config.ResearchProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 节点下线排空：在 Web 服务器与其他组件停止之前执行
+ * <p>
+ * 就绪状态切换为拒绝流量，范围分析通道与研究执行器依次停止接收并交还任务，最后通知 SSE 客户端重连到其他节点。
+ * 总耗时受 spring.lifecycle.timeout-per-shutdown-phase 限制
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ResearchDrainCoordinator implements SmartLifecycle {
+
+    private final ResearchProperties researchProperties;
+    private final ResearchTaskExecutor researchTaskExecutor;
+    private final ScopeTaskExecutor scopeTaskExecutor;
+    private final SseHub sseHub;
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    private volatile boolean running;
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        drain();
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        Thread.ofPlatform().name("research-drain").start(() -> {
+            try {
+                drain();
+            } finally {
+                callback.run();
+            }
+        });
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 最先停止，保证排空期间 Web 服务器与 Redis 连接仍可用
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE;
+    }
+
+    private void drain() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        long start = System.currentTimeMillis();
+        log.info("节点开始下线排空");
+        AvailabilityChangeEvent.publish(applicationEventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+        try {
+            // 范围分析先结束，进入研究队列的任务再由研究执行器一并交还
+            long timeoutMillis = TimeUnit.SECONDS.toMillis(researchProperties.getAsync().getDrainTimeoutSeconds());
+            scopeTaskExecutor.drain(timeoutMillis);
+            long remaining = timeoutMillis - (System.currentTimeMillis() - start);
+            researchTaskExecutor.drain(Math.max(remaining, 0));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("节点下线排空被中断");
+        } catch (Exception e) {
+            log.error("研究任务排空失败", e);
+        } finally {
+            sseHub.drain();
+        }
+        log.info("节点下线排空完成 elapsedMillis={}", System.currentTimeMillis() - start);
+    }
+}
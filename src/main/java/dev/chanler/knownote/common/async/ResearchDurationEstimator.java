@@ -0,0 +1,167 @@
+package dev.chanler.knownote.common.async;
+
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import dev.chanler.knownote.config.ResearchProperties;
+import dev.chanler.knownote.research.data.WorkflowStatus;
+import dev.chanler.knownote.research.domain.entity.ResearchSessionDO;
+import dev.chanler.knownote.research.domain.mapper.ResearchSessionMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 研究耗时估计：按 预算×模型 统计 EWMA 与滑动窗口分位数
+ * <p>
+ * 样本为研究队列执行耗时（范围分析之后到完成，不含排队等待），完成时写入 run_millis，启动时从中预热；
+ * 精确键无样本时依次回退到同预算、全局、task-timeout-minutes
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ResearchDurationEstimator {
+
+    private static final String ANY = "*";
+
+    private final ResearchProperties researchProperties;
+    private final ResearchSessionMapper researchSessionMapper;
+
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            List<ResearchSessionDO> sessions = researchSessionMapper.selectList(
+                    Wrappers.lambdaQuery(ResearchSessionDO.class)
+                            .select(ResearchSessionDO::getBudget, ResearchSessionDO::getModelId,
+                                    ResearchSessionDO::getRunMillis)
+                            .eq(ResearchSessionDO::getStatus, WorkflowStatus.COMPLETED)
+                            .isNotNull(ResearchSessionDO::getRunMillis)
+                            .orderByDesc(ResearchSessionDO::getCompleteTime)
+                            .last("LIMIT " + researchProperties.getAsync().getEtaSeedLimit()));
+            // 按完成时间正序喂入，EWMA 以最近的样本为重
+            Collections.reverse(sessions);
+            for (ResearchSessionDO session : sessions) {
+                if (session.getRunMillis() > 0) {
+                    record(session.getBudget(), session.getModelId(), session.getRunMillis());
+                }
+            }
+            log.info("研究耗时估计预热完成: samples={}", sessions.size());
+        } catch (BadSqlGrammarException e) {
+            log.error("研究耗时估计预热失败：research_session.run_millis 列不可用，请执行 schema.sql 中的迁移，排队预估将使用默认耗时", e);
+        } catch (Exception e) {
+            log.warn("研究耗时估计预热失败", e);
+        }
+    }
+
+    /**
+     * 记录一次完整执行的耗时并持久化，供重启后预热
+     */
+    public void complete(String researchId, String budget, String modelId, long millis) {
+        record(budget, modelId, millis);
+        try {
+            researchSessionMapper.updateRunMillis(researchId, millis);
+        } catch (BadSqlGrammarException e) {
+            log.error("研究执行耗时写入失败：research_session.run_millis 列不可用，请执行 schema.sql 中的迁移 researchId={}", researchId, e);
+        } catch (Exception e) {
+            log.warn("研究执行耗时写入失败 researchId={}", researchId, e);
+        }
+    }
+
+    public void record(String budget, String modelId, long millis) {
+        String budgetKey = normalize(budget);
+        stats(key(budgetKey, normalize(modelId))).add(millis);
+        stats(key(budgetKey, ANY)).add(millis);
+        stats(key(ANY, ANY)).add(millis);
+    }
+
+    /**
+     * 期望耗时（EWMA）
+     */
+    public long expectedMillis(String budget, String modelId) {
+        Stats s = lookup(budget, modelId);
+        return s == null ? fallbackMillis() : s.ewma();
+    }
+
+    /**
+     * 耗时分位数，用于准入判断
+     */
+    public long percentileMillis(String budget, String modelId, double percentile) {
+        Stats s = lookup(budget, modelId);
+        return s == null ? fallbackMillis() : s.percentile(percentile);
+    }
+
+    private Stats lookup(String budget, String modelId) {
+        String budgetKey = normalize(budget);
+        Stats s = stats.get(key(budgetKey, normalize(modelId)));
+        if (s == null) {
+            s = stats.get(key(budgetKey, ANY));
+        }
+        if (s == null) {
+            s = stats.get(key(ANY, ANY));
+        }
+        return s;
+    }
+
+    private Stats stats(String key) {
+        ResearchProperties.Async async = researchProperties.getAsync();
+        return stats.computeIfAbsent(key, k -> new Stats(async.getEtaAlpha(), async.getEtaSampleSize()));
+    }
+
+    private long fallbackMillis() {
+        return TimeUnit.MINUTES.toMillis(researchProperties.getAsync().getTaskTimeoutMinutes());
+    }
+
+    private static String key(String budget, String modelId) {
+        return budget + "|" + modelId;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? ANY : value.toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * 单个键的统计：EWMA + 最近 N 个样本的环形缓冲
+     */
+    private static class Stats {
+        private final double alpha;
+        private final long[] samples;
+        private int count;
+        private int next;
+        private double ewma;
+
+        Stats(double alpha, int sampleSize) {
+            this.alpha = alpha;
+            this.samples = new long[Math.max(sampleSize, 1)];
+        }
+
+        synchronized void add(long millis) {
+            ewma = count == 0 ? millis : alpha * millis + (1 - alpha) * ewma;
+            samples[next] = millis;
+            next = (next + 1) % samples.length;
+            count++;
+        }
+
+        synchronized long ewma() {
+            return (long) ewma;
+        }
+
+        synchronized long percentile(double percentile) {
+            int size = Math.min(count, samples.length);
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * size) - 1;
+            return sorted[Math.max(0, Math.min(index, size - 1))];
+        }
+    }
+}
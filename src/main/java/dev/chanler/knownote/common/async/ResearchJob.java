@@ -0,0 +1,10 @@
+package dev.chanler.knownote.common.async;
+
+/**
+ * 排队中的研究任务描述：公平调度按 userId/cost，耗时估计按 budget/modelId
+ * <p>
+ * cost 为预算档位的排队成本（budget.levels.*.cost），不是优先级：它推进该用户的虚拟完成时间，
+ * 成本越大的任务越晚出队，同一用户的高预算研究因此占用更多的公平份额
+ */
+public record ResearchJob(String researchId, Long userId, String budget, String modelId, int cost) {
+}
@@ -0,0 +1,17 @@
+package dev.chanler.knownote.common.async;
+
+/**
+ * 研究任务恢复：由领取任务的节点按 researchId 重建执行体
+ */
+public interface ResearchJobHandler {
+
+    /**
+     * 重建研究任务，会话已不可执行时返回 null
+     */
+    Runnable restore(String researchId);
+
+    /**
+     * 按会话记录描述任务，用于接手其他节点交还的任务；会话已不可执行时返回 null
+     */
+    ResearchJob describe(String researchId);
+}
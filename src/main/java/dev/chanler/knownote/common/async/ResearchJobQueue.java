@@ -0,0 +1,202 @@
+package dev.chanler.knownote.common.async;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 研究任务 Redis 队列：pending ZSet 按用户公平的虚拟完成时间排序，processing ZSet 以可见性截止时间为分数
+ * <p>
+ * 领取即移入 processing，执行中定期续期，完成后 ack；截止时间过期的任务由回收重新投递
+ */
+@Component
+@RequiredArgsConstructor
+public class ResearchJobQueue {
+
+    private static final String PENDING_KEY = "research:queue:pending";
+    private static final String PROCESSING_KEY = "research:queue:processing";
+    // vt 为全局虚拟时间，f:{userId} 为用户最近完成时间，r:{userId} 为用户执行中的任务数
+    private static final String FAIR_KEY = "research:queue:fair";
+    // researchId -> userId:cost
+    private static final String JOBS_KEY = "research:queue:jobs";
+    private static final int CLAIM_SCAN = 64;
+    private static final int REAP_BATCH = 100;
+
+    // KEYS[1]=pending, KEYS[2]=processing, KEYS[3]=fair, KEYS[4]=jobs, ARGV[1]=researchId, ARGV[2]=userId, ARGV[3]=cost
+    // 返回公平顺序下排在前面的任务数，已在队列或执行中返回 -1
+    private static final RedisScript<Long> ENQUEUE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('ZSCORE', KEYS[2], ARGV[1]) or redis.call('ZSCORE', KEYS[1], ARGV[1]) then
+                return -1
+            end
+            local vt = tonumber(redis.call('HGET', KEYS[3], 'vt') or '0')
+            local last = tonumber(redis.call('HGET', KEYS[3], 'f:' .. ARGV[2]) or '0')
+            local finish = math.max(vt, last) + tonumber(ARGV[3])
+            redis.call('HSET', KEYS[3], 'f:' .. ARGV[2], tostring(finish))
+            redis.call('HSET', KEYS[4], ARGV[1], ARGV[2] .. ':' .. ARGV[3])
+            redis.call('ZADD', KEYS[1], finish, ARGV[1])
+            return redis.call('ZRANK', KEYS[1], ARGV[1])
+            """, Long.class);
+
+    // KEYS[1]=pending, KEYS[2]=processing, KEYS[3]=fair, KEYS[4]=jobs, ARGV[1]=deadline, ARGV[2]=maxRunningPerUser, ARGV[3]=scan
+    // 按完成时间顺序扫描，跳过执行数已达上限的用户
+    private static final RedisScript<String> CLAIM_SCRIPT = new DefaultRedisScript<>("""
+            local entries = redis.call('ZRANGE', KEYS[1], 0, tonumber(ARGV[3]) - 1, 'WITHSCORES')
+            for i = 1, #entries, 2 do
+                local id = entries[i]
+                local user, cost = string.match(redis.call('HGET', KEYS[4], id) or '0:1', '^(.*):(%d+)$')
+                local running = tonumber(redis.call('HGET', KEYS[3], 'r:' .. user) or '0')
+                if running < tonumber(ARGV[2]) then
+                    redis.call('ZREM', KEYS[1], id)
+                    redis.call('ZADD', KEYS[2], ARGV[1], id)
+                    redis.call('HINCRBY', KEYS[3], 'r:' .. user, 1)
+                    local start = tonumber(entries[i + 1]) - tonumber(cost)
+                    local vt = tonumber(redis.call('HGET', KEYS[3], 'vt') or '0')
+                    if start > vt then
+                        redis.call('HSET', KEYS[3], 'vt', tostring(start))
+                    end
+                    return id
+                end
+            end
+            return false
+            """, String.class);
+
+    // KEYS[1]=processing, ARGV[1]=researchId, ARGV[2]=deadline；只续期仍在执行中的任务
+    private static final RedisScript<Long> EXTEND_SCRIPT = new DefaultRedisScript<>("""
+            return redis.call('ZADD', KEYS[1], 'XX', 'CH', ARGV[2], ARGV[1])
+            """, Long.class);
+
+    // KEYS[1]=processing, KEYS[2]=fair, KEYS[3]=jobs, ARGV[1]=researchId
+    private static final RedisScript<Long> ACK_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('ZREM', KEYS[1], ARGV[1]) == 0 then
+                return 0
+            end
+            local user = string.match(redis.call('HGET', KEYS[3], ARGV[1]) or '0:1', '^(.*):%d+$')
+            if tonumber(redis.call('HINCRBY', KEYS[2], 'r:' .. user, -1)) <= 0 then
+                redis.call('HDEL', KEYS[2], 'r:' .. user)
+            end
+            redis.call('HDEL', KEYS[3], ARGV[1])
+            return 1
+            """, Long.class);
+
+    // KEYS[1]=pending, KEYS[2]=processing, KEYS[3]=fair, KEYS[4]=jobs, ARGV[1]=now, ARGV[2]=limit
+    // 重新投递的任务排在队首，并归还用户执行数
+    private static final RedisScript<Long> REAP_SCRIPT = new DefaultRedisScript<>("""
+            local expired = redis.call('ZRANGEBYSCORE', KEYS[2], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2])
+            for _, id in ipairs(expired) do
+                redis.call('ZREM', KEYS[2], id)
+                redis.call('ZADD', KEYS[1], 0, id)
+                local user = string.match(redis.call('HGET', KEYS[4], id) or '0:1', '^(.*):%d+$')
+                if tonumber(redis.call('HINCRBY', KEYS[3], 'r:' .. user, -1)) <= 0 then
+                    redis.call('HDEL', KEYS[3], 'r:' .. user)
+                end
+            end
+            return #expired
+            """, Long.class);
+
+    // KEYS[1]=pending, KEYS[2]=processing, KEYS[3]=fair, KEYS[4]=jobs, ARGV[1]=researchId
+    // 执行中的任务交还队首，归还用户执行数，供其他节点立即领取
+    private static final RedisScript<Long> REQUEUE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('ZREM', KEYS[2], ARGV[1]) == 0 then
+                return 0
+            end
+            local user = string.match(redis.call('HGET', KEYS[4], ARGV[1]) or '0:1', '^(.*):%d+$')
+            if tonumber(redis.call('HINCRBY', KEYS[3], 'r:' .. user, -1)) <= 0 then
+                redis.call('HDEL', KEYS[3], 'r:' .. user)
+            end
+            redis.call('ZADD', KEYS[1], 0, ARGV[1])
+            return 1
+            """, Long.class);
+
+    // KEYS[1]=pending, KEYS[2]=jobs, ARGV[1]=researchId；只移除尚未被领取的任务
+    private static final RedisScript<Long> REMOVE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('ZREM', KEYS[1], ARGV[1]) == 0 then
+                return 0
+            end
+            redis.call('HDEL', KEYS[2], ARGV[1])
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 按用户公平入队，成本越大完成时间越靠后，返回排在前面的任务数；已在队列或执行中时返回 -1
+     */
+    public long enqueue(String researchId, Long userId, int cost) {
+        Long ahead = stringRedisTemplate.execute(ENQUEUE_SCRIPT, List.of(PENDING_KEY, PROCESSING_KEY, FAIR_KEY, JOBS_KEY),
+                researchId, String.valueOf(userId == null ? 0L : userId), String.valueOf(Math.max(cost, 1)));
+        return ahead == null ? -1 : ahead;
+    }
+
+    /**
+     * 领取完成时间最小且用户未达并发上限的任务，无可领取任务返回 null
+     */
+    public String claim(long visibilityMillis, int maxRunningPerUser) {
+        return stringRedisTemplate.execute(CLAIM_SCRIPT, List.of(PENDING_KEY, PROCESSING_KEY, FAIR_KEY, JOBS_KEY),
+                String.valueOf(System.currentTimeMillis() + visibilityMillis),
+                String.valueOf(maxRunningPerUser), String.valueOf(CLAIM_SCAN));
+    }
+
+    /**
+     * 续期可见性，任务已被回收时返回 false
+     */
+    public boolean extend(String researchId, long visibilityMillis) {
+        Long changed = stringRedisTemplate.execute(EXTEND_SCRIPT, List.of(PROCESSING_KEY),
+                researchId, String.valueOf(System.currentTimeMillis() + visibilityMillis));
+        return changed != null && changed > 0;
+    }
+
+    public void ack(String researchId) {
+        stringRedisTemplate.execute(ACK_SCRIPT, List.of(PROCESSING_KEY, FAIR_KEY, JOBS_KEY), researchId);
+    }
+
+    /**
+     * 将已领取的任务交还队首，任务不在执行中时返回 false
+     */
+    public boolean requeue(String researchId) {
+        Long moved = stringRedisTemplate.execute(REQUEUE_SCRIPT, List.of(PENDING_KEY, PROCESSING_KEY, FAIR_KEY, JOBS_KEY),
+                researchId);
+        return moved != null && moved > 0;
+    }
+
+    /**
+     * 回收可见性超时的任务，返回重新投递的数量
+     */
+    public long reap() {
+        Long reaped = stringRedisTemplate.execute(REAP_SCRIPT, List.of(PENDING_KEY, PROCESSING_KEY, FAIR_KEY, JOBS_KEY),
+                String.valueOf(System.currentTimeMillis()), String.valueOf(REAP_BATCH));
+        return reaped == null ? 0 : reaped;
+    }
+
+    /**
+     * 移除排队中的任务，已被领取或不存在时返回 false
+     */
+    public boolean remove(String researchId) {
+        Long removed = stringRedisTemplate.execute(REMOVE_SCRIPT, List.of(PENDING_KEY, JOBS_KEY), researchId);
+        return removed != null && removed > 0;
+    }
+
+    /**
+     * 公平顺序下排在前面的任务数，不在队列中返回 null
+     */
+    public Long rank(String researchId) {
+        return stringRedisTemplate.opsForZSet().rank(PENDING_KEY, researchId);
+    }
+
+    public boolean isPending(String researchId) {
+        return stringRedisTemplate.opsForZSet().score(PENDING_KEY, researchId) != null;
+    }
+
+    public boolean isQueuedOrProcessing(String researchId) {
+        return isPending(researchId)
+                || stringRedisTemplate.opsForZSet().score(PROCESSING_KEY, researchId) != null;
+    }
+
+    public long pendingSize() {
+        Long size = stringRedisTemplate.opsForZSet().zCard(PENDING_KEY);
+        return size == null ? 0 : size;
+    }
+}
@@ -0,0 +1,221 @@
+package dev.chanler.knownote.common.async;
+
+import cn.hutool.core.util.StrUtil;
+import dev.chanler.knownote.config.ResearchProperties;
+import dev.chanler.knownote.research.exception.ResearchCancelledException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 运行中研究的登记表：截止时间、取消请求与协作式取消检查点
+ * <p>
+ * 取消或超时时中断执行线程，阻塞中的模型与搜索 HTTP 调用随之中止，研究单元由 Supervisor 取消 Future 级联中断。
+ * 取消标记同时写入 Redis，执行研究的节点登记时检查一次，之后由巡检每轮一次 MGET 发现后中断本地运行；
+ * 标记在研究结束时删除
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ResearchRunRegistry {
+
+    public static final String REASON_CANCELLED = "CANCELLED";
+    public static final String REASON_TIMEOUT = "TIMEOUT";
+    public static final String REASON_DRAIN = "DRAIN";
+
+    private static final String CANCEL_KEY = "research:{}:cancel";
+    private static final long CANCEL_FLAG_TTL_SECONDS = 3600;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ResearchProperties researchProperties;
+
+    private final Map<String, Run> runs = new ConcurrentHashMap<>();
+    private ScheduledExecutorService watchdog;
+
+    @PostConstruct
+    public void init() {
+        long interval = researchProperties.getAsync().getCancelPollMs();
+        watchdog = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("research-watchdog").daemon(true).factory());
+        watchdog.scheduleWithFixedDelay(this::inspect, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * 登记当前线程执行的研究，返回的登记凭据用于注销；排队期间已收到的取消请求立即生效
+     */
+    public Run register(String researchId, Duration timeout) {
+        Run run = new Run(Thread.currentThread(), System.nanoTime() + timeout.toNanos());
+        runs.put(researchId, run);
+        try {
+            if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(cancelKey(researchId))) && run.cancel(REASON_CANCELLED)) {
+                log.info("研究在排队期间已被取消 researchId={}", researchId);
+            }
+        } catch (Exception e) {
+            log.warn("取消标记检查失败 researchId={}", researchId, e);
+        }
+        return run;
+    }
+
+    /**
+     * 注销研究，之后的取消请求不再中断该线程；登记已被后续阶段替换时只结束本次登记。
+     * 取消标记保留到研究结束，由 clearCancel 删除，避免交接到研究队列的任务漏掉取消
+     */
+    public void unregister(String researchId, Run run) {
+        run.finish();
+        runs.remove(researchId, run);
+    }
+
+    /**
+     * 研究结束时删除取消标记，之后恢复或重新开始的同一研究不受影响
+     */
+    public void clearCancel(String researchId) {
+        try {
+            stringRedisTemplate.delete(cancelKey(researchId));
+        } catch (Exception e) {
+            log.warn("取消标记清理失败 researchId={}", researchId, e);
+        }
+    }
+
+    /**
+     * 请求取消：写入集群取消标记，本节点运行中则立即中断
+     */
+    public void requestCancel(String researchId) {
+        stringRedisTemplate.opsForValue().set(cancelKey(researchId), REASON_CANCELLED,
+                CANCEL_FLAG_TTL_SECONDS, TimeUnit.SECONDS);
+        Run run = runs.get(researchId);
+        if (run != null && run.cancel(REASON_CANCELLED)) {
+            log.info("研究已取消 researchId={}", researchId);
+        }
+    }
+
+    /**
+     * 中断本节点运行中的研究，返回是否由本次调用中断
+     */
+    public boolean interrupt(String researchId, String reason) {
+        Run run = runs.get(researchId);
+        return run != null && run.cancel(reason);
+    }
+
+    /**
+     * 取消原因，未取消或未在本节点运行返回 null
+     */
+    public String cancelReason(String researchId) {
+        Run run = runs.get(researchId);
+        return run == null ? null : run.reason;
+    }
+
+    /**
+     * 协作式取消检查点：已取消或超过截止时间时抛出 ResearchCancelledException
+     */
+    public void checkpoint(String researchId) {
+        Run run = runs.get(researchId);
+        if (run == null) {
+            return;
+        }
+        if (run.reason == null && System.nanoTime() > run.deadline) {
+            run.cancel(REASON_TIMEOUT);
+        }
+        String reason = run.reason;
+        if (reason != null) {
+            throw new ResearchCancelledException(researchId, reason);
+        }
+    }
+
+    private void inspect() {
+        long now = System.nanoTime();
+        List<String> candidates = new ArrayList<>();
+        for (Map.Entry<String, Run> entry : runs.entrySet()) {
+            String researchId = entry.getKey();
+            Run run = entry.getValue();
+            if (now > run.deadline && run.cancel(REASON_TIMEOUT)) {
+                log.warn("研究超过截止时间，终止执行 researchId={}", researchId);
+            } else if (run.reason == null) {
+                candidates.add(researchId);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+        List<String> flags;
+        try {
+            flags = stringRedisTemplate.opsForValue().multiGet(candidates.stream().map(this::cancelKey).toList());
+        } catch (Exception e) {
+            log.warn("研究取消标记巡检失败 count={}", candidates.size(), e);
+            return;
+        }
+        if (flags == null) {
+            return;
+        }
+        for (int i = 0; i < candidates.size() && i < flags.size(); i++) {
+            String researchId = candidates.get(i);
+            Run run = flags.get(i) != null ? runs.get(researchId) : null;
+            if (run != null && run.cancel(REASON_CANCELLED)) {
+                log.info("收到集群取消请求，终止执行 researchId={}", researchId);
+            }
+        }
+    }
+
+    private String cancelKey(String researchId) {
+        return StrUtil.format(CANCEL_KEY, researchId);
+    }
+
+    /**
+     * 单次登记，由 register 返回
+     */
+    public static final class Run {
+        private final Thread thread;
+        private final long deadline;
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile String reason;
+        private boolean finished;
+
+        private Run(Thread thread, long deadline) {
+            this.thread = thread;
+            this.deadline = deadline;
+        }
+
+        /**
+         * 只在首次取消且仍在运行时中断，避免中断已复用的工作线程
+         */
+        private boolean cancel(String cancelReason) {
+            lock.lock();
+            try {
+                if (finished || reason != null) {
+                    return false;
+                }
+                reason = cancelReason;
+                thread.interrupt();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void finish() {
+            lock.lock();
+            try {
+                finished = true;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -5,67 +5,665 @@ import dev.chanler.knownote.common.util.EventPublisher;
 import dev.chanler.knownote.config.ResearchProperties;
 import dev.chanler.knownote.research.data.EventType;
 import dev.chanler.knownote.research.exception.ResearchException;
+import dev.chanler.knownote.research.model.ModelHandler;
+import dev.chanler.knownote.research.model.ModelThrottle;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 研究任务执行器
+ * <p>
+ * platform 模式使用固定线程池；virtual 模式每个研究一个虚拟线程，
+ * 节点并发由信号量限制，其中同时活跃的研究数再由随模型延迟与限流信号调整的自适应上限约束，模型并发由 ModelThrottle 限制。
+ * 排队任务按用户公平出队、按预算成本推进虚拟时间，单用户执行中的研究数受限；
+ * 开始时间由历史耗时估计推算，预计等待超过上限时拒绝提交，队列推进时向排队中的研究推送最新位置。
+ * queue=redis 时任务进入 Redis 队列，各节点按空闲许可领取，宕机节点的任务超时后重新投递。
+ * 下线时停止领取，排队任务交还 Redis 队列，执行中的任务超过等待时限后中断并交还，由其他节点从检查点接手
  */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class ResearchTaskExecutor {
 
+    private static final String MODE_VIRTUAL = "virtual";
+    private static final String QUEUE_REDIS = "redis";
+    private static final String LANE = "research";
+    private static final long DRAIN_POLL_MILLIS = 200;
+    private static final long HANDOFF_GRACE_MILLIS = 10_000;
+
     private final ResearchProperties researchProperties;
     private final EventPublisher eventPublisher;
+    private final ResearchJobQueue researchJobQueue;
+    private final ObjectProvider<ResearchJobHandler> researchJobHandler;
+    private final ModelHandler modelHandler;
+    private final ResearchDurationEstimator durationEstimator;
+    private final ResearchRunRegistry researchRunRegistry;
+    private final MeterRegistry meterRegistry;
+    private final ModelThrottle modelThrottle;
     private ThreadPoolTaskExecutor executor;
+    private Counter rejected;
+
+    private boolean virtualMode;
+    private boolean redisQueue;
+    private Semaphore activePermits;
+    private AdaptiveLimit activeLimit;
+    private FairResearchQueue pending;
+    private Thread dispatcher;
+
+    // 本节点提交、尚未被领取的任务；被本节点领取时直接执行，免去重建
+    private final Map<String, LocalTask> localTasks = new ConcurrentHashMap<>();
+    // 本地模式执行中的任务及开始时间，用于推算剩余耗时
+    private final Map<String, Running> running = new ConcurrentHashMap<>();
+    // 最近一次推送的前方任务数，位置不变时不重复推送
+    private final Map<String, Integer> publishedAhead = new ConcurrentHashMap<>();
+    private final Set<String> runningJobs = ConcurrentHashMap.newKeySet();
+    // 下线时被中断、结束后需交还队列的任务
+    private final Set<String> handedOff = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService maintenanceScheduler;
+    private volatile boolean draining;
 
     @PostConstruct
     public void init() {
         ResearchProperties.Async async = researchProperties.getAsync();
-        executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(async.getMaxPoolSize());
-        executor.setMaxPoolSize(async.getMaxPoolSize());
-        executor.setQueueCapacity(async.getQueueCapacity());
-        executor.setThreadNamePrefix("research-");
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
-        executor.initialize();
-        log.info("研究任务执行器初始化完成: maxPoolSize={}, queueCapacity={}",
-                async.getMaxPoolSize(), async.getQueueCapacity());
+        redisQueue = QUEUE_REDIS.equalsIgnoreCase(async.getQueue());
+        virtualMode = redisQueue || MODE_VIRTUAL.equalsIgnoreCase(async.getMode());
+        initActiveLimit();
+        registerMetrics();
+        if (redisQueue) {
+            activePermits = new Semaphore(async.getMaxActiveResearch());
+            dispatcher = Thread.ofPlatform().name("research-dispatcher").daemon(true).start(this::dispatchRemote);
+            long visibilityMillis = TimeUnit.SECONDS.toMillis(async.getVisibilityTimeoutSeconds());
+            maintenanceScheduler = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("research-queue-maintenance").daemon(true).factory());
+            maintenanceScheduler.scheduleWithFixedDelay(this::extendRunning,
+                    visibilityMillis / 3, visibilityMillis / 3, TimeUnit.MILLISECONDS);
+            maintenanceScheduler.scheduleWithFixedDelay(this::reap,
+                    async.getReapIntervalSeconds(), async.getReapIntervalSeconds(), TimeUnit.SECONDS);
+            maintenanceScheduler.scheduleWithFixedDelay(this::publishRemoteQueueStatus,
+                    async.getReapIntervalSeconds(), async.getReapIntervalSeconds(), TimeUnit.SECONDS);
+            log.info("研究任务执行器初始化完成: queue=redis, maxActiveResearch={}, queueCapacity={}, visibilityTimeoutSeconds={}, maxRunningPerUser={}",
+                    async.getMaxActiveResearch(), async.getQueueCapacity(), async.getVisibilityTimeoutSeconds(),
+                    async.getMaxRunningPerUser());
+            return;
+        }
+        activePermits = new Semaphore(capacity());
+        pending = new FairResearchQueue(async.getQueueCapacity(), async.getMaxRunningPerUser());
+        if (!virtualMode) {
+            // 线程池只作为执行载体，排队与准入由公平队列和许可控制
+            executor = new ThreadPoolTaskExecutor();
+            executor.setCorePoolSize(async.getMaxPoolSize());
+            executor.setMaxPoolSize(async.getMaxPoolSize());
+            executor.setQueueCapacity(async.getMaxPoolSize());
+            executor.setThreadNamePrefix("research-");
+            executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+            executor.initialize();
+        }
+        dispatcher = Thread.ofPlatform().name("research-dispatcher").daemon(true).start(this::dispatch);
+        // 本地队列节点接手其他节点下线时交还到 Redis 队列的任务
+        maintenanceScheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("research-queue-maintenance").daemon(true).factory());
+        maintenanceScheduler.scheduleWithFixedDelay(this::adopt,
+                async.getReapIntervalSeconds(), async.getReapIntervalSeconds(), TimeUnit.SECONDS);
+        log.info("研究任务执行器初始化完成: mode={}, capacity={}, queueCapacity={}, maxRunningPerUser={}",
+                virtualMode ? MODE_VIRTUAL : "platform", capacity(), async.getQueueCapacity(), async.getMaxRunningPerUser());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+        if (maintenanceScheduler != null) {
+            maintenanceScheduler.shutdownNow();
+        }
     }
 
     /**
-     * 提交研究任务，推送预计执行时间到 SSE
+     * 研究队列指标，与范围分析通道以 lane 标签区分；Redis 队列的长度为集群共享队列长度
      */
-    public void submit(String researchId, Runnable task) {
-        int queueSize = executor.getThreadPoolExecutor().getQueue().size();
-        int activeCount = executor.getActiveCount();
-        String estimatedTime = calculateEstimatedTime(queueSize, activeCount);
+    private void registerMetrics() {
+        Gauge.builder("research.queue.size", this, ResearchTaskExecutor::queuedCount)
+                .tag("lane", LANE).register(meterRegistry);
+        Gauge.builder("research.queue.active", this, ResearchTaskExecutor::activeCount)
+                .tag("lane", LANE).register(meterRegistry);
+        rejected = meterRegistry.counter("research.queue.rejected", "lane", LANE);
+    }
+
+    /**
+     * 活跃研究上限：初始为节点容量，随模型调用的延迟与限流信号收缩或恢复
+     */
+    private void initActiveLimit() {
+        ResearchProperties.Limiter limiter = researchProperties.getLimiter();
+        int capacity = capacity();
+        activeLimit = limiter.isEnabled()
+                ? new AdaptiveLimit(capacity, Math.min(limiter.getMinActiveResearch(), capacity), capacity,
+                        limiter.getBackoffRatio(), limiter.getLatencyTolerance(),
+                        TimeUnit.MILLISECONDS.toNanos(limiter.getBackoffWindowMs()))
+                : new AdaptiveLimit(capacity, capacity, capacity, 1, Double.MAX_VALUE, 0);
+        modelThrottle.addFollower(activeLimit);
+        Gauge.builder("research.concurrency.limit", activeLimit, AdaptiveLimit::getLimit)
+                .tag("scope", LANE).register(meterRegistry);
+        Gauge.builder("research.concurrency.inflight", activeLimit, AdaptiveLimit::getInflight)
+                .tag("scope", LANE).register(meterRegistry);
+    }
+
+    private long queuedCount() {
+        if (redisQueue) {
+            return researchJobQueue.pendingSize();
+        }
+        return pending != null ? pending.size() : 0;
+    }
+
+    public boolean isRedisQueue() {
+        return redisQueue;
+    }
 
+    /**
+     * 提交研究任务，按公平排队位置与历史耗时推算开始时间并推送到 SSE
+     * <p>
+     * 按分位数耗时推算的等待超过 max-predicted-wait-minutes 时撤回并拒绝
+     */
+    public void submit(ResearchJob job, Runnable task) {
+        String researchId = job.researchId();
+        if (draining && !redisQueue) {
+            log.warn("节点下线中，拒绝任务 researchId={}", researchId);
+            modelHandler.removeModel(researchId);
+            throw new ResearchException("服务节点正在下线，请稍后重试");
+        }
+        int ahead;
         try {
-            executor.execute(task);
-            log.info("任务已提交，researchId={}, estimatedTime={}", researchId, estimatedTime);
-            eventPublisher.publishTempEvent(researchId, EventType.QUEUE, "排队中：预计 " + estimatedTime + " 开始执行");
+            ahead = execute(job, task);
         } catch (RejectedExecutionException e) {
             log.warn("任务被拒绝，researchId={}, 队列已满", researchId);
+            rejected.increment();
+            modelHandler.removeModel(researchId);
             throw new ResearchException("系统繁忙，请稍后重试");
         }
+
+        ResearchProperties.Async async = researchProperties.getAsync();
+        long maxWaitMillis = TimeUnit.MINUTES.toMillis(async.getMaxPredictedWaitMinutes());
+        if (maxWaitMillis > 0) {
+            long predicted = predictWait(job, ahead, true);
+            if (predicted > maxWaitMillis && withdraw(researchId)) {
+                log.warn("预计等待超过上限，拒绝任务 researchId={}, ahead={}, predictedMillis={}",
+                        researchId, ahead, predicted);
+                rejected.increment();
+                modelHandler.removeModel(researchId);
+                throw new ResearchException("当前排队预计等待约 "
+                        + TimeUnit.MILLISECONDS.toMinutes(predicted) + " 分钟，请稍后重试");
+            }
+        }
+
+        long waitMillis = predictWait(job, ahead, false);
+        log.info("任务已提交，researchId={}, userId={}, ahead={}, waitMillis={}",
+                researchId, job.userId(), ahead, waitMillis);
+        publishedAhead.put(researchId, ahead);
+        eventPublisher.publishTempEvent(researchId, EventType.QUEUE, queueStatus(ahead, waitMillis));
+    }
+
+    /**
+     * 入队并返回公平顺序下排在前面的任务数
+     */
+    private int execute(ResearchJob job, Runnable task) {
+        String researchId = job.researchId();
+        if (redisQueue) {
+            if (researchJobQueue.pendingSize() >= researchProperties.getAsync().getQueueCapacity()) {
+                throw new RejectedExecutionException("research queue is full");
+            }
+            // 下线中只入共享队列，由其他节点按会话记录重建
+            boolean keepLocal = !draining;
+            if (keepLocal) {
+                localTasks.put(researchId, new LocalTask(job, task));
+            }
+            long ahead = researchJobQueue.enqueue(researchId, job.userId(), job.cost());
+            if (ahead < 0) {
+                localTasks.remove(researchId);
+                throw new RejectedExecutionException("research already queued: " + researchId);
+            }
+            if (!keepLocal) {
+                modelHandler.removeModel(researchId);
+            }
+            return (int) ahead;
+        }
+        int ahead = pending.offer(job, task);
+        if (ahead < 0) {
+            throw new RejectedExecutionException("research queue is full");
+        }
+        return ahead;
+    }
+
+    /**
+     * 取消排队中的任务，已开始执行或不在队列中返回 false
+     */
+    public boolean cancelQueued(String researchId) {
+        if (!withdraw(researchId)) {
+            return false;
+        }
+        publishedAhead.remove(researchId);
+        return true;
+    }
+
+    /**
+     * 撤回尚未开始的任务，已被领取时返回 false
+     */
+    private boolean withdraw(String researchId) {
+        if (redisQueue) {
+            if (!researchJobQueue.remove(researchId)) {
+                return false;
+            }
+            localTasks.remove(researchId);
+            return true;
+        }
+        return pending.remove(researchId);
+    }
+
+    /**
+     * 先取得节点许可，有可出队任务后再取自适应许可并按公平顺序出队，队列长度即为真实等待数；
+     * 空闲等待期间不占用自适应许可，避免在途数虚高
+     */
+    private void dispatch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                activePermits.acquire();
+                FairResearchQueue.Entry entry;
+                try {
+                    entry = takeWithLimit();
+                } catch (InterruptedException e) {
+                    activePermits.release();
+                    throw e;
+                }
+                String researchId = entry.job().researchId();
+                publishedAhead.remove(researchId);
+                running.put(researchId, new Running(entry.job(), System.currentTimeMillis()));
+                Runnable run = () -> {
+                    try {
+                        entry.task().run();
+                    } finally {
+                        running.remove(researchId);
+                        if (handedOff.remove(researchId)) {
+                            handOff(entry.job());
+                        }
+                        pending.release(entry);
+                        releaseSlot();
+                    }
+                };
+                if (virtualMode) {
+                    Thread.ofVirtual().name("research-vt-" + researchId).start(run);
+                } else {
+                    executor.execute(run);
+                }
+                publishLocalQueueStatus();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 
-    private String calculateEstimatedTime(int queueSize, int activeCount) {
+    /**
+     * 有空闲许可时从 Redis 领取任务，队列为空则间隔轮询
+     */
+    private void dispatchRemote() {
         ResearchProperties.Async async = researchProperties.getAsync();
-        if (activeCount < async.getMaxPoolSize()) {
-            return DateUtil.format(DateUtil.date(), "HH:mm");
+        long visibilityMillis = TimeUnit.SECONDS.toMillis(async.getVisibilityTimeoutSeconds());
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                acquireSlot();
+                String researchId;
+                try {
+                    researchId = researchJobQueue.claim(visibilityMillis, async.getMaxRunningPerUser());
+                } catch (Exception e) {
+                    log.warn("领取研究任务失败", e);
+                    researchId = null;
+                }
+                if (researchId == null) {
+                    releaseSlot();
+                    Thread.sleep(async.getPollIntervalMs());
+                    continue;
+                }
+                runClaimed(researchId);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 先取节点许可再取自适应上限，上限收缩时调度线程在此等待
+     */
+    private void acquireSlot() throws InterruptedException {
+        activePermits.acquire();
+        try {
+            activeLimit.acquire();
+        } catch (InterruptedException e) {
+            activePermits.release();
+            throw e;
+        }
+    }
+
+    private FairResearchQueue.Entry takeWithLimit() throws InterruptedException {
+        while (true) {
+            pending.awaitTakeable();
+            activeLimit.acquire();
+            FairResearchQueue.Entry entry = pending.poll();
+            if (entry != null) {
+                return entry;
+            }
+            // 等待自适应许可期间任务被撤回
+            activeLimit.release();
+        }
+    }
+
+    private void releaseSlot() {
+        activeLimit.release();
+        activePermits.release();
+    }
+
+    private void runClaimed(String researchId) {
+        runningJobs.add(researchId);
+        Thread.ofVirtual().name("research-vt-" + researchId).start(() -> {
+            try {
+                publishedAhead.remove(researchId);
+                LocalTask local = localTasks.remove(researchId);
+                Runnable task = local != null ? local.task() : null;
+                if (task == null) {
+                    task = researchJobHandler.getObject().restore(researchId);
+                }
+                if (task == null) {
+                    log.info("研究任务已不可执行，跳过 researchId={}", researchId);
+                    return;
+                }
+                log.info("开始执行研究任务 researchId={}", researchId);
+                task.run();
+            } catch (Exception e) {
+                log.error("研究任务执行失败 researchId={}", researchId, e);
+            } finally {
+                runningJobs.remove(researchId);
+                if (handedOff.remove(researchId)) {
+                    researchJobQueue.requeue(researchId);
+                } else {
+                    researchJobQueue.ack(researchId);
+                }
+                releaseSlot();
+            }
+        });
+    }
+
+    /**
+     * 下线排空：停止领取新任务，交还排队任务，等待执行中的任务结束，超时则中断并交还
+     */
+    public void drain(long timeoutMillis) throws InterruptedException {
+        draining = true;
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+        handOffQueued();
+        if (!awaitIdle(timeoutMillis)) {
+            int interrupted = 0;
+            for (String researchId : activeIds()) {
+                // 先登记再中断，任务收尾时才能看到交还标记
+                handedOff.add(researchId);
+                if (researchRunRegistry.interrupt(researchId, ResearchRunRegistry.REASON_DRAIN)) {
+                    interrupted++;
+                } else {
+                    handedOff.remove(researchId);
+                }
+            }
+            log.warn("下线等待超时，中断执行中的研究并交还队列 count={}", interrupted);
+            if (!awaitIdle(HANDOFF_GRACE_MILLIS)) {
+                log.warn("仍有研究未结束，将由可见性超时重新投递 researchIds={}", activeIds());
+            }
         }
-        int position = queueSize + 1;
-        int batch = (position + async.getMaxPoolSize() - 1) / async.getMaxPoolSize();
-        int waitMinutes = batch * async.getTaskTimeoutMinutes();
-        return DateUtil.format(DateUtil.offsetMinute(DateUtil.date(), waitMinutes), "HH:mm");
+    }
+
+    private boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (activeCount() > 0) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(DRAIN_POLL_MILLIS);
+        }
+        return true;
+    }
+
+    private Set<String> activeIds() {
+        return Set.copyOf(redisQueue ? runningJobs : running.keySet());
+    }
+
+    /**
+     * 交还尚未开始的任务：Redis 队列中的任务保持原位，只释放本地引用；本地队列的任务转入 Redis 队列
+     */
+    private void handOffQueued() {
+        if (redisQueue) {
+            for (String researchId : localTasks.keySet()) {
+                if (localTasks.remove(researchId) != null) {
+                    publishedAhead.remove(researchId);
+                    modelHandler.removeModel(researchId);
+                }
+            }
+            return;
+        }
+        List<FairResearchQueue.Entry> entries = pending.drainAll();
+        for (FairResearchQueue.Entry entry : entries) {
+            handOff(entry.job());
+            publishedAhead.remove(entry.job().researchId());
+            modelHandler.removeModel(entry.job().researchId());
+        }
+        if (!entries.isEmpty()) {
+            log.info("排队任务已交还共享队列 count={}", entries.size());
+        }
+    }
+
+    private void handOff(ResearchJob job) {
+        try {
+            researchJobQueue.enqueue(job.researchId(), job.userId(), job.cost());
+        } catch (Exception e) {
+            log.error("研究任务交还失败 researchId={}", job.researchId(), e);
+        }
+    }
+
+    /**
+     * 本地队列模式：领取其他节点交还的任务，按会话记录重建后进入本地公平队列
+     */
+    private void adopt() {
+        ResearchProperties.Async async = researchProperties.getAsync();
+        long visibilityMillis = TimeUnit.SECONDS.toMillis(async.getVisibilityTimeoutSeconds());
+        try {
+            researchJobQueue.reap();
+            int adopted = 0;
+            while (!draining && pending.size() < async.getQueueCapacity()) {
+                String researchId = researchJobQueue.claim(visibilityMillis, Integer.MAX_VALUE);
+                if (researchId == null) {
+                    break;
+                }
+                ResearchJobHandler handler = researchJobHandler.getObject();
+                ResearchJob job = handler.describe(researchId);
+                Runnable task = job != null ? handler.restore(researchId) : null;
+                if (task != null && pending.offer(job, task) < 0) {
+                    modelHandler.removeModel(researchId);
+                    researchJobQueue.requeue(researchId);
+                    break;
+                }
+                researchJobQueue.ack(researchId);
+                if (task != null) {
+                    adopted++;
+                }
+            }
+            if (adopted > 0) {
+                log.info("接手交还的研究任务 count={}", adopted);
+                publishLocalQueueStatus();
+            }
+        } catch (Exception e) {
+            log.warn("接手交还任务失败", e);
+        }
+    }
+
+    private void extendRunning() {
+        long visibilityMillis = TimeUnit.SECONDS.toMillis(researchProperties.getAsync().getVisibilityTimeoutSeconds());
+        for (String researchId : runningJobs) {
+            try {
+                if (!researchJobQueue.extend(researchId, visibilityMillis)) {
+                    log.warn("研究任务可见性已过期，可能被重新投递 researchId={}", researchId);
+                }
+            } catch (Exception e) {
+                log.warn("研究任务续期失败 researchId={}", researchId, e);
+            }
+        }
+    }
+
+    private void reap() {
+        try {
+            long reaped = researchJobQueue.reap();
+            if (reaped > 0) {
+                log.warn("回收超时研究任务并重新投递 count={}", reaped);
+            }
+            // 本节点提交但已被其他节点领取的任务，释放本地引用
+            for (String researchId : localTasks.keySet()) {
+                if (!researchJobQueue.isPending(researchId) && localTasks.remove(researchId) != null) {
+                    publishedAhead.remove(researchId);
+                    modelHandler.removeModel(researchId);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("研究任务队列维护失败", e);
+        }
+    }
+
+    /**
+     * 队列推进后向本地排队中的研究推送最新位置与预计开始时间
+     */
+    private void publishLocalQueueStatus() {
+        try {
+            List<ResearchJob> queued = pending.snapshot();
+            long[] waits = predictStarts(queued, false);
+            for (int i = 0; i < queued.size(); i++) {
+                publishIfMoved(queued.get(i).researchId(), i, waits[i]);
+            }
+        } catch (Exception e) {
+            log.warn("排队状态推送失败", e);
+        }
+    }
+
+    /**
+     * Redis 队列：由提交节点定期推送其任务的最新位置
+     */
+    private void publishRemoteQueueStatus() {
+        try {
+            for (LocalTask local : localTasks.values()) {
+                Long ahead = researchJobQueue.rank(local.job().researchId());
+                if (ahead != null) {
+                    publishIfMoved(local.job().researchId(), ahead.intValue(),
+                            predictWait(local.job(), ahead.intValue(), false));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("排队状态推送失败", e);
+        }
+    }
+
+    private void publishIfMoved(String researchId, int ahead, long waitMillis) {
+        Integer previous = publishedAhead.put(researchId, ahead);
+        if (previous == null || previous != ahead) {
+            eventPublisher.publishTransientEvent(researchId, EventType.QUEUE, queueStatus(ahead, waitMillis));
+        }
+    }
+
+    private String queueStatus(int ahead, long waitMillis) {
+        String estimatedTime = DateUtil.format(DateUtil.offsetMillisecond(DateUtil.date(), (int) waitMillis), "HH:mm");
+        return "排队中：前方 " + ahead + " 个任务，预计 " + estimatedTime + " 开始执行";
+    }
+
+    /**
+     * 预计等待时长；conservative 时按分位数耗时推算，用于准入
+     */
+    private long predictWait(ResearchJob job, int ahead, boolean conservative) {
+        if (!redisQueue) {
+            List<ResearchJob> queued = pending.snapshot();
+            long[] waits = predictStarts(queued, conservative);
+            for (int i = 0; i < queued.size(); i++) {
+                if (queued.get(i).researchId().equals(job.researchId())) {
+                    return waits[i];
+                }
+            }
+            return 0;
+        }
+        // 集群队列中其他任务的预算与各节点运行情况未知，按本节点当前上限与该任务耗时近似
+        int capacity = effectiveCapacity();
+        int free = capacity - activeCount();
+        if (ahead < free) {
+            return 0;
+        }
+        int rounds = (ahead - free) / capacity + 1;
+        return rounds * duration(job, conservative);
+    }
+
+    /**
+     * 模拟按序占用执行槽：槽位初始为执行中任务的剩余耗时，排队任务依次占用最早空出的槽
+     */
+    private long[] predictStarts(List<ResearchJob> queued, boolean conservative) {
+        long now = System.currentTimeMillis();
+        PriorityQueue<Long> slots = new PriorityQueue<>();
+        for (Running r : running.values()) {
+            slots.add(Math.max(0, duration(r.job(), conservative) - (now - r.startMillis())));
+        }
+        while (slots.size() < effectiveCapacity()) {
+            slots.add(0L);
+        }
+        long[] waits = new long[queued.size()];
+        for (int i = 0; i < queued.size(); i++) {
+            long start = slots.poll();
+            waits[i] = start;
+            slots.add(start + duration(queued.get(i), conservative));
+        }
+        return waits;
+    }
+
+    private long duration(ResearchJob job, boolean conservative) {
+        return conservative
+                ? durationEstimator.percentileMillis(job.budget(), job.modelId(),
+                        researchProperties.getAsync().getEtaAdmissionPercentile())
+                : durationEstimator.expectedMillis(job.budget(), job.modelId());
+    }
+
+    /**
+     * 已开始执行的任务数，不含调度线程预占的许可
+     */
+    private int activeCount() {
+        return redisQueue ? runningJobs.size() : running.size();
+    }
+
+    private int effectiveCapacity() {
+        return Math.max(1, Math.min(capacity(), activeLimit.getLimit()));
+    }
+
+    private int capacity() {
+        ResearchProperties.Async async = researchProperties.getAsync();
+        return virtualMode ? async.getMaxActiveResearch() : async.getMaxPoolSize();
+    }
+
+    private record LocalTask(ResearchJob job, Runnable task) {
+    }
+
+    private record Running(ResearchJob job, long startMillis) {
     }
 }
@@ -0,0 +1,62 @@
+package dev.chanler.knownote.common.async;
+
+import dev.chanler.knownote.config.ResearchProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 研究单元执行器，供 Supervisor 并发执行 conductResearch
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ResearchUnitExecutor {
+
+    private final ResearchProperties researchProperties;
+    private ThreadPoolTaskExecutor executor;
+    private ExecutorService virtualExecutor;
+
+    @PostConstruct
+    public void init() {
+        ResearchProperties.Async async = researchProperties.getAsync();
+        if ("virtual".equalsIgnoreCase(async.getMode())) {
+            // 并发已由 Supervisor 按预算限制，这里每个单元一个虚拟线程
+            virtualExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("research-unit-", 0).factory());
+            log.info("研究单元执行器初始化完成: mode=virtual");
+            return;
+        }
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(async.getUnitPoolSize());
+        executor.setMaxPoolSize(async.getUnitPoolSize());
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("research-unit-");
+        // 线程耗尽时由 Supervisor 线程自行执行，退化为串行而不是失败
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        log.info("研究单元执行器初始化完成: unitPoolSize={}", async.getUnitPoolSize());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+        if (virtualExecutor != null) {
+            virtualExecutor.shutdown();
+        }
+    }
+
+    public <T> Future<T> submit(Callable<T> task) {
+        return virtualExecutor != null ? virtualExecutor.submit(task) : executor.submit(task);
+    }
+}
@@ -0,0 +1,99 @@
+package dev.chanler.knownote.common.async;
+
+import dev.chanler.knownote.config.ResearchProperties;
+import dev.chanler.knownote.research.exception.ResearchException;
+import dev.chanler.knownote.research.model.ModelHandler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 范围分析快速通道：小容量独立线程池，澄清问题无需在研究任务队列中等待
+ * <p>
+ * 只执行一两次模型调用的 Scope 阶段，进入 IN_SCOPE 的研究再提交到 ResearchTaskExecutor
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ScopeTaskExecutor {
+
+    private static final String LANE = "scope";
+    private static final long DRAIN_POLL_MILLIS = 200;
+
+    private final ResearchProperties researchProperties;
+    private final ModelHandler modelHandler;
+    private final MeterRegistry meterRegistry;
+
+    private ThreadPoolTaskExecutor executor;
+    private Counter rejected;
+    private volatile boolean draining;
+
+    @PostConstruct
+    public void init() {
+        ResearchProperties.Async async = researchProperties.getAsync();
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(async.getScopePoolSize());
+        executor.setMaxPoolSize(async.getScopePoolSize());
+        executor.setQueueCapacity(async.getScopeQueueCapacity());
+        executor.setThreadNamePrefix("research-scope-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+
+        ThreadPoolExecutor pool = executor.getThreadPoolExecutor();
+        Gauge.builder("research.queue.size", pool, p -> p.getQueue().size())
+                .tag("lane", LANE).register(meterRegistry);
+        Gauge.builder("research.queue.active", pool, ThreadPoolExecutor::getActiveCount)
+                .tag("lane", LANE).register(meterRegistry);
+        rejected = meterRegistry.counter("research.queue.rejected", "lane", LANE);
+        log.info("范围分析通道初始化完成: poolSize={}, queueCapacity={}",
+                async.getScopePoolSize(), async.getScopeQueueCapacity());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    public void submit(String researchId, Runnable task) {
+        if (draining) {
+            modelHandler.removeModel(researchId);
+            throw new ResearchException("服务节点正在下线，请稍后重试");
+        }
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.warn("范围分析任务被拒绝，researchId={}, 队列已满", researchId);
+            rejected.increment();
+            modelHandler.removeModel(researchId);
+            throw new ResearchException("系统繁忙，请稍后重试");
+        }
+    }
+
+    /**
+     * 下线排空：拒绝新任务，等待已接收的范围分析结束，进入研究队列的任务随后由研究执行器交还
+     */
+    public boolean drain(long timeoutMillis) throws InterruptedException {
+        draining = true;
+        ThreadPoolExecutor pool = executor.getThreadPoolExecutor();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (pool.getActiveCount() > 0 || !pool.getQueue().isEmpty()) {
+            if (System.currentTimeMillis() >= deadline) {
+                log.warn("范围分析通道排空超时 active={}, queued={}", pool.getActiveCount(), pool.getQueue().size());
+                return false;
+            }
+            Thread.sleep(DRAIN_POLL_MILLIS);
+        }
+        return true;
+    }
+}
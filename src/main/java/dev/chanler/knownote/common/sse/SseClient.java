@@ -0,0 +1,354 @@
+package dev.chanler.knownote.common.sse;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 单个 SSE 连接：有界发送队列 + 独立写线程，发布方只入队不阻塞
+ * <p>
+ * 写线程在短暂等待后将队列中的多帧合并为一次写出
+ */
+@Slf4j
+class SseClient {
+
+    private final String researchId;
+    @Getter
+    private final String clientId;
+    @Getter
+    private final SseEmitter emitter;
+    private final int capacity;
+    private final SseOverflowPolicy overflowPolicy;
+    private final long lingerMs;
+    private final int maxBatchSize;
+    private final Consumer<SseClient> onClose;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final ArrayDeque<Frame> queue = new ArrayDeque<>();
+    private volatile boolean closed;
+    // 重放已发出的位置，只由写线程在启动后读取
+    private volatile int replayedSeq;
+    private volatile String replayedStreamId;
+
+    SseClient(String researchId, String clientId, SseEmitter emitter, int capacity,
+              SseOverflowPolicy overflowPolicy, long lingerMs, int maxBatchSize, Consumer<SseClient> onClose) {
+        this.researchId = researchId;
+        this.clientId = clientId;
+        this.emitter = emitter;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.lingerMs = lingerMs;
+        this.maxBatchSize = maxBatchSize;
+        this.onClose = onClose;
+    }
+
+    /**
+     * 启动写线程，每个连接一个虚拟线程
+     */
+    void start() {
+        Thread.ofVirtual()
+                .name("sse-writer-" + clientId)
+                .start(this::writeLoop);
+    }
+
+    /**
+     * 记录重放已发出的位置，启动前调用；队列中不晚于该位置的时间线事件与报告流片段不再发出
+     */
+    void skipReplayed(int seq, String streamId) {
+        this.replayedSeq = seq;
+        this.replayedStreamId = streamId;
+    }
+
+    void sendEvent(int seq, SseEmitter.SseEventBuilder event) {
+        Frame frame = new Frame(Frame.EVENT, event, null, null);
+        frame.seq = seq;
+        offer(frame);
+    }
+
+    void sendReportStream(String eventId, String partialText) {
+        offer(new Frame(Frame.REPORT_STREAM, null, eventId, new StringBuilder(partialText)));
+    }
+
+    void sendHeartbeat() {
+        lock.lock();
+        try {
+            // 队列中已有待发数据时无需心跳
+            if (!queue.isEmpty()) {
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        offer(new Frame(Frame.EVENT, SseEmitter.event().comment("heartbeat"), null, null));
+    }
+
+    /**
+     * 发送结束帧后关闭连接，结束帧不受容量限制
+     */
+    void complete(String finalStatus) {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            queue.addLast(new Frame(Frame.DONE, SseEmitter.event().data("[DONE] " + finalStatus), null, null));
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 节点下线：通知客户端按给定间隔重连到其他节点后关闭连接
+     */
+    void reconnect(long retryMillis) {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            queue.addLast(new Frame(Frame.DONE, SseEmitter.event().name("reconnect")
+                    .reconnectTime(retryMillis).data("draining"), null, null));
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            queue.clear();
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void offer(Frame frame) {
+        boolean disconnect = false;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            Frame tail = queue.peekLast();
+            if (overflowPolicy == SseOverflowPolicy.COALESCE && frame.isReportStream()
+                    && tail != null && tail.isReportStream()) {
+                tail.merge(frame);
+                return;
+            }
+            if (queue.size() >= capacity && !makeRoom(frame)) {
+                if (overflowPolicy == SseOverflowPolicy.DROP_REPORT_STREAM && frame.isReportStream()) {
+                    return;
+                }
+                disconnect = true;
+            } else {
+                queue.addLast(frame);
+                notEmpty.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (disconnect) {
+            log.warn("SSE 发送队列已满，断开连接 researchId={}, clientId={}, policy={}",
+                    researchId, clientId, overflowPolicy);
+            disconnect();
+        }
+    }
+
+    /**
+     * 按溢出策略腾出空间，成功返回 true
+     */
+    private boolean makeRoom(Frame incoming) {
+        switch (overflowPolicy) {
+            case DROP_REPORT_STREAM -> {
+                if (incoming.isReportStream()) {
+                    return false;
+                }
+                Iterator<Frame> it = queue.iterator();
+                while (it.hasNext()) {
+                    if (it.next().isReportStream()) {
+                        it.remove();
+                        return true;
+                    }
+                }
+                return false;
+            }
+            case COALESCE -> {
+                Frame previous = null;
+                Iterator<Frame> it = queue.iterator();
+                while (it.hasNext()) {
+                    Frame current = it.next();
+                    if (previous != null && previous.isReportStream() && current.isReportStream()) {
+                        previous.merge(current);
+                        it.remove();
+                    } else {
+                        previous = current;
+                    }
+                }
+                return queue.size() < capacity;
+            }
+            default -> {
+                return false;
+            }
+        }
+    }
+
+    private void writeLoop() {
+        List<Frame> batch = new ArrayList<>(maxBatchSize);
+        while (true) {
+            lock.lock();
+            try {
+                while (queue.isEmpty() && !closed) {
+                    notEmpty.await();
+                }
+                if (closed) {
+                    return;
+                }
+                // 等待一小段时间，让紧随其后的帧合并到同一次写出
+                if (lingerMs > 0 && queue.size() < maxBatchSize) {
+                    notEmpty.await(lingerMs, TimeUnit.MILLISECONDS);
+                }
+                while (!queue.isEmpty() && batch.size() < maxBatchSize) {
+                    batch.add(queue.pollFirst());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+            if (!write(batch)) {
+                return;
+            }
+            batch.clear();
+        }
+    }
+
+    private boolean write(List<Frame> batch) {
+        Set<ResponseBodyEmitter.DataWithMediaType> data = new LinkedHashSet<>();
+        boolean done = false;
+        for (Frame frame : batch) {
+            if (isReplayed(frame)) {
+                continue;
+            }
+            data.addAll(frame.toEvent().build());
+            done |= frame.type == Frame.DONE;
+        }
+        if (data.isEmpty()) {
+            return true;
+        }
+        try {
+            emitter.send(data);
+            if (done) {
+                closed = true;
+                emitter.complete();
+                return false;
+            }
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            log.debug("SSE 写出失败，移除连接 researchId={}, clientId={}", researchId, clientId);
+            disconnect();
+            return false;
+        }
+    }
+
+    private boolean isReplayed(Frame frame) {
+        if (frame.type == Frame.EVENT) {
+            return frame.seq > 0 && frame.seq <= replayedSeq;
+        }
+        if (frame.type == Frame.REPORT_STREAM && frame.id != null && replayedStreamId != null) {
+            int separator = frame.id.indexOf(':');
+            return compareStreamIds(frame.id.substring(separator + 1), replayedStreamId) <= 0;
+        }
+        return false;
+    }
+
+    /**
+     * 比较 Redis Stream ID（毫秒-序号）
+     */
+    private static int compareStreamIds(String a, String b) {
+        String[] left = a.split("-", 2);
+        String[] right = b.split("-", 2);
+        try {
+            int result = Long.compare(Long.parseLong(left[0]), Long.parseLong(right[0]));
+            if (result != 0 || left.length < 2 || right.length < 2) {
+                return result;
+            }
+            return Long.compare(Long.parseLong(left[1]), Long.parseLong(right[1]));
+        } catch (NumberFormatException e) {
+            return 1;
+        }
+    }
+
+    private void disconnect() {
+        close();
+        onClose.accept(this);
+        try {
+            emitter.complete();
+        } catch (Exception e) {
+            log.debug("SSE 连接关闭失败 researchId={}, clientId={}", researchId, clientId, e);
+        }
+    }
+
+    private static class Frame {
+        static final int EVENT = 0;
+        static final int REPORT_STREAM = 1;
+        static final int DONE = 2;
+
+        final int type;
+        final SseEmitter.SseEventBuilder event;
+        final StringBuilder text;
+        String id;
+        // 时间线事件的 seq，其他帧为 0
+        int seq;
+
+        Frame(int type, SseEmitter.SseEventBuilder event, String id, StringBuilder text) {
+            this.type = type;
+            this.event = event;
+            this.id = id;
+            this.text = text;
+        }
+
+        boolean isReportStream() {
+            return type == REPORT_STREAM;
+        }
+
+        /**
+         * 合并后续片段，事件 ID 取较新的一个，重连时从合并后的末尾续传
+         */
+        void merge(Frame next) {
+            text.append(next.text);
+            if (next.id != null) {
+                id = next.id;
+            }
+        }
+
+        SseEmitter.SseEventBuilder toEvent() {
+            if (type == REPORT_STREAM) {
+                SseEmitter.SseEventBuilder builder = SseEmitter.event().name("report-stream");
+                if (id != null) {
+                    builder.id(id);
+                }
+                return builder.data(text.toString());
+            }
+            return event;
+        }
+    }
+}
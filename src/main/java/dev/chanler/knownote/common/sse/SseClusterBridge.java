@@ -0,0 +1,181 @@
+package dev.chanler.knownote.common.sse;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.chanler.knownote.config.ResearchProperties;
+import dev.chanler.knownote.research.data.TimelineItem;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.SubscriptionListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * SSE 跨节点转发：每个研究一个 Redis 频道，节点只订阅本地有连接的研究
+ * <p>
+ * 本地推送不经过 Redis，收到自身节点发出的消息直接忽略
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SseClusterBridge {
+
+    public static final String TYPE_TIMELINE = "timeline";
+    public static final String TYPE_REPORT_STREAM = "report-stream";
+    public static final String TYPE_COMPLETE = "complete";
+
+    private static final String CHANNEL = "research:{}:sse";
+
+    private final ResearchProperties researchProperties;
+    private final RedisConnectionFactory redisConnectionFactory;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+
+    private final String nodeId = IdUtil.fastSimpleUUID();
+    // researchId -> listener
+    private final Map<String, ResearchListener> listeners = new ConcurrentHashMap<>();
+    private RedisMessageListenerContainer container;
+    private ExecutorService dispatcher;
+
+    @PostConstruct
+    public void init() {
+        if (!isEnabled()) {
+            return;
+        }
+        // 单线程分发，保持同一频道消息的发布顺序；回调只入队连接的发送队列，不阻塞
+        dispatcher = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("sse-bridge").daemon(true).factory());
+        container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.setTaskExecutor(dispatcher);
+        container.afterPropertiesSet();
+        container.start();
+        log.info("SSE 跨节点转发已启用: nodeId={}", nodeId);
+    }
+
+    @PreDestroy
+    public void destroy() throws Exception {
+        if (container != null) {
+            container.destroy();
+        }
+        if (dispatcher != null) {
+            dispatcher.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return researchProperties.getSse().isCluster();
+    }
+
+    /**
+     * 订阅研究频道，收到其他节点的消息时回调；返回的 Future 在 Redis 确认订阅后完成，未启用时立即完成
+     */
+    public CompletableFuture<Void> subscribe(String researchId, Consumer<Envelope> handler) {
+        if (!isEnabled()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        ResearchListener listener = new ResearchListener(researchId, handler);
+        ResearchListener previous = listeners.put(researchId, listener);
+        if (previous != null) {
+            container.removeMessageListener(previous);
+        }
+        container.addMessageListener(listener, new ChannelTopic(channel(researchId)));
+        return listener.subscribed;
+    }
+
+    /**
+     * 当前订阅的确认状态，未订阅或未启用时返回已完成的 Future
+     */
+    public CompletableFuture<Void> subscription(String researchId) {
+        ResearchListener listener = isEnabled() ? listeners.get(researchId) : null;
+        return listener != null ? listener.subscribed : CompletableFuture.completedFuture(null);
+    }
+
+    public void unsubscribe(String researchId) {
+        if (!isEnabled()) {
+            return;
+        }
+        MessageListener listener = listeners.remove(researchId);
+        if (listener != null) {
+            container.removeMessageListener(listener);
+        }
+    }
+
+    public void publishTimelineItem(String researchId, TimelineItem item) {
+        publish(researchId, new Envelope(nodeId, TYPE_TIMELINE, null, item, null));
+    }
+
+    public void publishReportStream(String researchId, String eventId, String partialText) {
+        publish(researchId, new Envelope(nodeId, TYPE_REPORT_STREAM, eventId, null, partialText));
+    }
+
+    public void publishComplete(String researchId, String finalStatus) {
+        publish(researchId, new Envelope(nodeId, TYPE_COMPLETE, null, null, finalStatus));
+    }
+
+    private void publish(String researchId, Envelope envelope) {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.convertAndSend(channel(researchId), objectMapper.writeValueAsString(envelope));
+        } catch (Exception e) {
+            log.warn("SSE 跨节点消息发布失败 researchId={}, type={}", researchId, envelope.type(), e);
+        }
+    }
+
+    private String channel(String researchId) {
+        return StrUtil.format(CHANNEL, researchId);
+    }
+
+    /**
+     * 单个研究频道的监听器，Redis 确认订阅后完成 subscribed
+     */
+    private class ResearchListener implements MessageListener, SubscriptionListener {
+        private final String researchId;
+        private final Consumer<Envelope> handler;
+        private final CompletableFuture<Void> subscribed = new CompletableFuture<>();
+
+        ResearchListener(String researchId, Consumer<Envelope> handler) {
+            this.researchId = researchId;
+            this.handler = handler;
+        }
+
+        @Override
+        public void onMessage(Message message, byte[] pattern) {
+            try {
+                Envelope envelope = objectMapper.readValue(message.getBody(), Envelope.class);
+                if (!nodeId.equals(envelope.nodeId())) {
+                    handler.accept(envelope);
+                }
+            } catch (Exception e) {
+                log.warn("SSE 跨节点消息处理失败 researchId={}", researchId, e);
+            }
+        }
+
+        @Override
+        public void onChannelSubscribed(byte[] channel, long count) {
+            subscribed.complete(null);
+        }
+    }
+
+    /**
+     * 跨节点消息：timeline 携带 item，report-stream 携带 id 与 text，complete 携带 text
+     */
+    public record Envelope(String nodeId, String type, String id, TimelineItem item, String text) {
+    }
+}
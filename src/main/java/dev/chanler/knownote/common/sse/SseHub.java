@@ -4,6 +4,8 @@ import cn.hutool.core.collection.CollectionUtil;
 import cn.hutool.core.util.NumberUtil;
 import cn.hutool.core.util.StrUtil;
 import dev.chanler.knownote.common.util.CacheUtil;
+import dev.chanler.knownote.common.util.ReportStreamStore;
+import dev.chanler.knownote.config.ResearchProperties;
 import dev.chanler.knownote.research.data.TimelineItem;
 import dev.chanler.knownote.research.exception.ResearchException;
 import lombok.RequiredArgsConstructor;
@@ -15,13 +17,14 @@ import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * SSE 连接管理与事件推送
@@ -34,10 +37,14 @@ public class SseHub {
     private static final Long SSE_TIMEOUT_MS = 0L;
     private static final long HEARTBEAT_INTERVAL_MS = 30_000L;
 
-    // researchId -> (clientId -> emitter)
-    private final Map<String, Map<String, SseEmitter>> researchEmitters = new ConcurrentHashMap<>();
+    // researchId -> (clientId -> client)
+    private final Map<String, Map<String, SseClient>> researchClients = new ConcurrentHashMap<>();
     private final CacheUtil cacheUtil;
+    private final ReportStreamStore reportStreamStore;
+    private final ResearchProperties researchProperties;
+    private final SseClusterBridge sseClusterBridge;
     private ScheduledExecutorService heartbeatScheduler;
+    private volatile boolean draining;
 
     @PostConstruct
     public void init() {
@@ -53,51 +60,103 @@ public class SseHub {
         }
     }
 
-    private void sendHeartbeat() {
-        List<String[]> toRemove = new ArrayList<>();
-        for (Map.Entry<String, Map<String, SseEmitter>> research : researchEmitters.entrySet()) {
-            String researchId = research.getKey();
-            for (Map.Entry<String, SseEmitter> client : research.getValue().entrySet()) {
-                String clientId = client.getKey();
-                SseEmitter emitter = client.getValue();
-                try {
-                    emitter.send(SseEmitter.event().comment("heartbeat"));
-                } catch (IOException e) {
-                    log.debug("心跳失败，移除连接 researchId={}, clientId={}", researchId, clientId);
-                    toRemove.add(new String[]{researchId, clientId});
-                }
+    /**
+     * 节点下线：拒绝新连接，通知现有连接重连到其他节点
+     * <p>
+     * 客户端携带 Last-Event-ID 重连，由接手节点从时间线重放
+     */
+    public void drain() {
+        draining = true;
+        long retryMillis = researchProperties.getSse().getReconnectDelayMs();
+        int count = 0;
+        for (String researchId : researchClients.keySet()) {
+            Map<String, SseClient> clients = researchClients.remove(researchId);
+            if (CollectionUtil.isEmpty(clients)) {
+                continue;
+            }
+            sseClusterBridge.unsubscribe(researchId);
+            for (SseClient client : clients.values()) {
+                client.reconnect(retryMillis);
+                count++;
             }
         }
-        toRemove.forEach(pair -> remove(pair[0], pair[1]));
+        log.info("SSE 连接已通知重连 count={}", count);
+    }
+
+    private void sendHeartbeat() {
+        for (Map<String, SseClient> clients : researchClients.values()) {
+            clients.values().forEach(SseClient::sendHeartbeat);
+        }
     }
 
     public SseEmitter connect(Long userId, String researchId, String clientId, String lastEventId) {
         if (!cacheUtil.verifyResearchOwnership(researchId, userId)) {
             throw new ResearchException("研究任务不存在或无权限访问");
         }
+        if (draining) {
+            throw new ResearchException("服务节点正在下线，请稍后重连");
+        }
+        ResearchProperties.Sse config = researchProperties.getSse();
         SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MS);
-        emitter.onCompletion(() -> remove(researchId, clientId));
-        emitter.onTimeout(() -> remove(researchId, clientId));
-        emitter.onError(ex -> remove(researchId, clientId));
+        SseClient client = new SseClient(researchId, clientId, emitter, config.getQueueCapacity(),
+                config.getOverflowPolicy(), config.getLingerMs(), config.getMaxBatchSize(),
+                closed -> remove(researchId, closed));
+        emitter.onCompletion(() -> remove(researchId, client));
+        emitter.onTimeout(() -> remove(researchId, client));
+        emitter.onError(ex -> remove(researchId, client));
 
-        researchEmitters
-                .computeIfAbsent(researchId, k -> new ConcurrentHashMap<>())
-                .put(clientId, emitter);
+        researchClients.compute(researchId, (k, clients) -> {
+            if (clients == null) {
+                clients = new ConcurrentHashMap<>();
+                // 本节点首个连接时订阅跨节点频道
+                sseClusterBridge.subscribe(researchId, envelope -> onRemote(researchId, envelope));
+            }
+            SseClient previous = clients.put(clientId, client);
+            if (previous != null) {
+                previous.close();
+            }
+            return clients;
+        });
 
-        replayIfNeeded(userId, researchId, emitter, lastEventId);
+        // 跨节点订阅确认后再取重放快照，之后其他节点发布的事件都会实时送达
+        awaitSubscription(researchId, config.getSubscribeTimeoutMs());
+        // 重放直接写出，完成后再启动写线程，期间的新事件在队列中等待，已重放的由写线程跳过
+        replayIfNeeded(userId, researchId, client, lastEventId);
+        client.start();
 
         return emitter;
     }
 
-    private void remove(String researchId, String clientId) {
-        Map<String, SseEmitter> clients = researchEmitters.get(researchId);
-        if (CollectionUtil.isEmpty(clients)) {
-            return;
+    private void awaitSubscription(String researchId, long timeoutMs) {
+        try {
+            sseClusterBridge.subscription(researchId).get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("SSE 跨节点订阅未在 {}ms 内确认，重放后可能缺少其他节点的事件 researchId={}", timeoutMs, researchId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.warn("SSE 跨节点订阅失败 researchId={}", researchId, e.getCause());
         }
+    }
+
+    private void remove(String researchId, SseClient client) {
+        client.close();
+        researchClients.computeIfPresent(researchId, (k, clients) -> {
+            clients.remove(client.getClientId(), client);
+            if (clients.isEmpty()) {
+                sseClusterBridge.unsubscribe(researchId);
+                return null;
+            }
+            return clients;
+        });
+    }
 
-        clients.remove(clientId);
-        if (clients.isEmpty()) {
-            researchEmitters.remove(researchId);
+    private void onRemote(String researchId, SseClusterBridge.Envelope envelope) {
+        switch (envelope.type()) {
+            case SseClusterBridge.TYPE_TIMELINE -> deliverTimelineItem(researchId, envelope.item());
+            case SseClusterBridge.TYPE_REPORT_STREAM -> deliverReportStream(researchId, envelope.id(), envelope.text());
+            case SseClusterBridge.TYPE_COMPLETE -> completeLocal(researchId, envelope.text());
+            default -> log.warn("未知的 SSE 跨节点消息类型 researchId={}, type={}", researchId, envelope.type());
         }
     }
 
@@ -105,99 +164,119 @@ public class SseHub {
         if (item == null || item.getSequenceNo() == null) {
             return;
         }
-        String eventId = item.getSequenceNo().toString();
-        Map<String, SseEmitter> clients = researchEmitters.get(researchId);
+        deliverTimelineItem(researchId, item);
+        sseClusterBridge.publishTimelineItem(researchId, item);
+    }
+
+    private void deliverTimelineItem(String researchId, TimelineItem item) {
+        if (item == null || item.getSequenceNo() == null) {
+            return;
+        }
+        Map<String, SseClient> clients = researchClients.get(researchId);
         if (CollectionUtil.isEmpty(clients)) {
             return;
         }
+        String eventId = item.getSequenceNo().toString();
+        for (SseClient client : clients.values()) {
+            client.sendEvent(item.getSequenceNo(), SseEmitter.event()
+                    .id(eventId)
+                    .name(item.getKind())
+                    .data(item));
+        }
+    }
 
-        for (Map.Entry<String, SseEmitter> entry : clients.entrySet()) {
-            String clientId = entry.getKey();
-            SseEmitter emitter = entry.getValue();
-            if (emitter == null) {
-                continue;
-            }
-            try {
-                SseEmitter.SseEventBuilder builder = SseEmitter.event()
-                        .id(eventId)
-                        .name(item.getKind())
-                        .data(item);
-                emitter.send(builder);
-            } catch (IOException e) {
-                log.error("SSE 时间线推送失败，researchId={}, clientId={}", researchId, clientId, e);
-                remove(researchId, clientId);
-            }
+    public void sendReportStream(String researchId, String eventId, String partialText) {
+        if (StrUtil.isEmptyIfStr(partialText)) {
+            return;
         }
+        deliverReportStream(researchId, eventId, partialText);
+        sseClusterBridge.publishReportStream(researchId, eventId, partialText);
     }
 
-    public void sendReportStream(String researchId, String partialText) {
+    private void deliverReportStream(String researchId, String eventId, String partialText) {
         if (StrUtil.isEmptyIfStr(partialText)) {
             return;
         }
-        Map<String, SseEmitter> clients = researchEmitters.get(researchId);
+        Map<String, SseClient> clients = researchClients.get(researchId);
         if (CollectionUtil.isEmpty(clients)) {
             return;
         }
-
-        for (Map.Entry<String, SseEmitter> entry : clients.entrySet()) {
-            String clientId = entry.getKey();
-            SseEmitter emitter = entry.getValue();
-            if (emitter == null) {
-                continue;
-            }
-            try {
-                SseEmitter.SseEventBuilder builder = SseEmitter.event()
-                        .name("report-stream")
-                        .data(partialText);
-                emitter.send(builder);
-            } catch (IOException e) {
-                log.error("SSE 报告流推送失败，researchId={}, clientId={}", researchId, clientId, e);
-                remove(researchId, clientId);
-            }
+        for (SseClient client : clients.values()) {
+            client.sendReportStream(eventId, partialText);
         }
     }
 
-    private void replayIfNeeded(Long userId, String researchId, SseEmitter emitter, String lastEventId) {
+    /**
+     * 按 Last-Event-ID 重放："seq" 为时间线事件，"seq:streamId" 为报告流片段；
+     * 片段在写入时的 seq 之后、下一条时间线事件之前发出；重放到的位置交给连接，用于跳过重复的实时事件
+     */
+    private void replayIfNeeded(Long userId, String researchId, SseClient client, String lastEventId) {
         if (StrUtil.isEmptyIfStr(lastEventId)) {
             return;
         }
 
-        Integer lastSeq = NumberUtil.parseInt(lastEventId.trim(), 0);
+        String[] parts = lastEventId.trim().split(":", 2);
+        int lastSeq = NumberUtil.parseInt(parts[0], 0);
+        String lastStreamId = parts.length > 1 ? parts[1] : null;
 
         List<TimelineItem> items = cacheUtil.getTimeline(researchId, lastSeq);
-        if (CollectionUtil.isEmpty(items)) {
+        List<ReportStreamStore.Chunk> chunks = reportStreamStore.readAfter(researchId, lastStreamId).stream()
+                .filter(chunk -> chunk.seq() >= lastSeq)
+                .toList();
+        if (CollectionUtil.isEmpty(items) && CollectionUtil.isEmpty(chunks)) {
             return;
         }
 
-        for (TimelineItem item : items) {
-            try {
+        SseEmitter emitter = client.getEmitter();
+        int chunkIndex = 0;
+        int replayedSeq = lastSeq;
+        String replayedStreamId = lastStreamId;
+        try {
+            for (TimelineItem item : items) {
+                while (chunkIndex < chunks.size() && chunks.get(chunkIndex).seq() < item.getSequenceNo()) {
+                    replayedStreamId = chunks.get(chunkIndex).id();
+                    emitter.send(reportChunkEvent(chunks.get(chunkIndex++)));
+                }
                 String eventId = item.getSequenceNo().toString();
                 SseEmitter.SseEventBuilder builder = SseEmitter.event()
                         .id(eventId)
                         .name(item.getKind())
                         .data(item);
                 emitter.send(builder);
-            } catch (IOException e) {
-                log.error("重放失败 userId={}, researchId={}", userId, researchId, e);
-                break;
+                replayedSeq = Math.max(replayedSeq, item.getSequenceNo());
             }
+            while (chunkIndex < chunks.size()) {
+                replayedStreamId = chunks.get(chunkIndex).id();
+                emitter.send(reportChunkEvent(chunks.get(chunkIndex++)));
+            }
+        } catch (IOException e) {
+            log.error("重放失败 userId={}, researchId={}", userId, researchId, e);
+        } finally {
+            client.skipReplayed(replayedSeq, replayedStreamId);
         }
     }
 
+    private SseEmitter.SseEventBuilder reportChunkEvent(ReportStreamStore.Chunk chunk) {
+        return SseEmitter.event()
+                .id(chunk.seq() + ":" + chunk.id())
+                .name("report-stream")
+                .data(chunk.text());
+    }
+
     public void complete(String researchId, String finalStatus) {
-        Map<String, SseEmitter> clients = researchEmitters.remove(researchId);
+        completeLocal(researchId, finalStatus);
+        sseClusterBridge.publishComplete(researchId, finalStatus);
+    }
+
+    private void completeLocal(String researchId, String finalStatus) {
+        Map<String, SseClient> clients = researchClients.remove(researchId);
         if (CollectionUtil.isEmpty(clients)) {
             return;
         }
-        for (Map.Entry<String, SseEmitter> entry : clients.entrySet()) {
-            SseEmitter emitter = entry.getValue();
-            try {
-                emitter.send(SseEmitter.event()
-                        .data("[DONE] " + finalStatus));
-                emitter.complete();
-            } catch (IOException e) {
-                log.warn("SSE 结束失败, researchId={}, clientId={}", researchId, entry.getKey(), e);
-            }
+        sseClusterBridge.unsubscribe(researchId);
+        // 结束帧排在已入队事件之后，由各自写线程发出并关闭连接
+        for (SseClient client : clients.values()) {
+            client.complete(finalStatus);
         }
         log.debug("SSE 连接已清理, researchId={}, clientCount={}", researchId, clients.size());
     }
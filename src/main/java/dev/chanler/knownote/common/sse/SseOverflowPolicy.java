@@ -0,0 +1,19 @@
+package dev.chanler.knownote.common.sse;
+
+/**
+ * SSE 客户端发送队列溢出策略
+ */
+public enum SseOverflowPolicy {
+    /**
+     * 丢弃报告流片段，为时间线条目腾出空间；无片段可丢时断开
+     */
+    DROP_REPORT_STREAM,
+    /**
+     * 合并相邻的报告流片段；合并后仍无空间时断开
+     */
+    COALESCE,
+    /**
+     * 直接断开，由客户端携带 Last-Event-ID 重连补齐
+     */
+    DISCONNECT
+}
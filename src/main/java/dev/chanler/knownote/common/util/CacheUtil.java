@@ -4,8 +4,6 @@ import cn.hutool.core.collection.CollectionUtil;
 import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import dev.chanler.knownote.research.domain.entity.ChatMessageDO;
 import dev.chanler.knownote.research.domain.entity.WorkflowEventDO;
 import dev.chanler.knownote.research.domain.entity.ResearchSessionDO;
@@ -16,9 +14,9 @@ import dev.chanler.knownote.research.data.TimelineItem;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.ZSetOperations;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
@@ -37,12 +35,13 @@ public class CacheUtil {
     private final ResearchSessionMapper researchSessionMapper;
     private final SequenceUtil sequenceUtil;
     private final StringRedisTemplate stringRedisTemplate;
-    private final ObjectMapper objectMapper;
+    private final TimelineWriteBehind timelineWriteBehind;
+    private final TimelineIdAllocator timelineIdAllocator;
+    private final TimelineRedisStore timelineRedisStore;
+    private final TimelineCodec timelineCodec;
 
     private static final String KIND_MESSAGE = "message";
     private static final String KIND_EVENT = "event";
-    private static final String TIMELINE_KEY = "research:{}:timeline";
-    private static final long TIMELINE_TTL_MINUTES = 30;
 
     private static final String USER_RESEARCHES_KEY = "user:{}:researches";
     private static final long USER_RESEARCHES_TTL_DAYS = 7;
@@ -50,13 +49,14 @@ public class CacheUtil {
     public TimelineItem saveMessage(String researchId, String role, String content) {
         int seq = sequenceUtil.next(researchId);
         ChatMessageDO message = ChatMessageDO.builder()
+                .id(timelineIdAllocator.nextMessageId())
                 .researchId(researchId)
                 .role(role)
                 .content(content)
                 .sequenceNo(seq)
                 .createTime(LocalDateTime.now())
                 .build();
-        chatMessageMapper.insert(message);
+        timelineWriteBehind.save(message);
         TimelineItem item = TimelineItem.builder()
                 .kind(KIND_MESSAGE)
                 .researchId(researchId)
@@ -71,6 +71,7 @@ public class CacheUtil {
                                     String title, String content, Long parentEventId) {
         int seq = sequenceUtil.next(researchId);
         WorkflowEventDO event = WorkflowEventDO.builder()
+                .id(timelineIdAllocator.nextEventId())
                 .researchId(researchId)
                 .type(type)
                 .title(title)
@@ -79,7 +80,7 @@ public class CacheUtil {
                 .sequenceNo(seq)
                 .createTime(LocalDateTime.now())
                 .build();
-        workflowEventMapper.insert(event);
+        timelineWriteBehind.save(event);
         TimelineItem item = TimelineItem.builder()
                 .kind(KIND_EVENT)
                 .researchId(researchId)
@@ -94,6 +95,15 @@ public class CacheUtil {
      * 保存临时事件排队信息，用于前端显示排队状态，seq = -1
      */
     public TimelineItem saveTempEvent(String researchId, String type, String title) {
+        TimelineItem item = tempEvent(researchId, type, title);
+        writeToRedis(researchId, List.of(item));
+        return item;
+    }
+
+    /**
+     * 构建临时事件（seq=-1），不写入时间线
+     */
+    public TimelineItem tempEvent(String researchId, String type, String title) {
         WorkflowEventDO event = WorkflowEventDO.builder()
                 .researchId(researchId)
                 .type(type)
@@ -101,105 +111,148 @@ public class CacheUtil {
                 .sequenceNo(-1)
                 .createTime(LocalDateTime.now())
                 .build();
-        TimelineItem item = TimelineItem.builder()
+        return TimelineItem.builder()
                 .kind(KIND_EVENT)
                 .researchId(researchId)
                 .sequenceNo(-1)
                 .event(event)
                 .build();
-        writeToRedis(researchId, List.of(item));
-        return item;
     }
 
+    /**
+     * 刷出尚未落库的时间线记录
+     */
+    public void flush() {
+        timelineWriteBehind.flush();
+    }
+
+    /**
+     * 读取 seq > lastSeq 的时间线：Redis 覆盖 [floor, +inf)，缺口区间按索引从 DB 补齐并回填
+     */
     public List<TimelineItem> getTimeline(String researchId, int lastSeq) {
-        List<TimelineItem> redisItems = readFromRedis(researchId, lastSeq + 1, Integer.MAX_VALUE);
-        if (!redisItems.isEmpty()) {
+        int fromSeq = lastSeq + 1;
+        TimelineRedisStore.Range cached = timelineRedisStore.range(researchId, fromSeq, Integer.MAX_VALUE);
+        List<TimelineItem> redisItems = decode(researchId, cached.values());
+        Integer floor = cached.floor();
+        if (floor != null && floor <= fromSeq) {
             return redisItems;
         }
-        List<TimelineItem> all = loadFromDb(researchId);
-        writeToRedis(researchId, all);
-        if (lastSeq == 0) {
-            return all;
-        }
-        return all.stream()
-                .filter(item -> item.getSequenceNo() > lastSeq)
-                .collect(Collectors.toList());
+        // 补齐前先刷出本节点尚未落库的记录，避免区间内出现空洞
+        timelineWriteBehind.flush();
+        int beforeSeq = floor != null ? floor : Integer.MAX_VALUE;
+        List<TimelineItem> backfill = loadFromDb(researchId, lastSeq, beforeSeq);
+        timelineRedisStore.bulkLoad(researchId, toEntries(backfill), fromSeq);
+        log.debug("时间线区间回填 researchId={}, range=({}, {}), size={}", researchId, lastSeq, beforeSeq, backfill.size());
+        return merge(backfill, redisItems);
     }
 
     private void writeToRedis(String researchId, List<TimelineItem> items) {
-        if (CollectionUtil.isEmpty(items)) {
-            return;
-        }
-        String key = StrUtil.format(TIMELINE_KEY, researchId);
-        Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>();
-        for (TimelineItem item : items) {
-            String value = serialize(item);
-            if (value != null) {
-                tuples.add(ZSetOperations.TypedTuple.of(value, (double) item.getSequenceNo()));
-            }
-        }
-        if (!tuples.isEmpty()) {
-            stringRedisTemplate.opsForZSet().add(key, tuples);
-            stringRedisTemplate.expire(key, TIMELINE_TTL_MINUTES, TimeUnit.MINUTES);
+        List<TimelineRedisStore.Entry> entries = toEntries(items);
+        if (!entries.isEmpty()) {
+            timelineRedisStore.add(researchId, entries);
         }
     }
 
-    private List<TimelineItem> readFromRedis(String researchId, int minSeq, int maxSeq) {
-        String key = StrUtil.format(TIMELINE_KEY, researchId);
-        Set<String> values = stringRedisTemplate.opsForZSet().rangeByScore(key, minSeq, maxSeq);
+    private List<TimelineItem> decode(String researchId, List<byte[]> values) {
         if (CollectionUtil.isEmpty(values)) {
             return new ArrayList<>();
         }
-        stringRedisTemplate.expire(key, TIMELINE_TTL_MINUTES, TimeUnit.MINUTES);
         return values.stream()
-                .map(this::deserialize)
+                .map(value -> deserialize(researchId, value))
                 .filter(Objects::nonNull)
                 .sorted(Comparator.comparing(TimelineItem::getSequenceNo))
                 .collect(Collectors.toList());
     }
 
-    private List<TimelineItem> loadFromDb(String researchId) {
+    private List<TimelineRedisStore.Entry> toEntries(List<TimelineItem> items) {
+        if (CollectionUtil.isEmpty(items)) {
+            return List.of();
+        }
+        List<TimelineRedisStore.Entry> entries = new ArrayList<>(items.size());
+        for (TimelineItem item : items) {
+            byte[] value = serialize(item);
+            if (value != null) {
+                entries.add(new TimelineRedisStore.Entry(item.getSequenceNo(), value));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * 按 (afterSeq, beforeSeq) 区间读取消息与事件，两路均按 seq 有序，直接归并
+     */
+    private List<TimelineItem> loadFromDb(String researchId, int afterSeq, int beforeSeq) {
         LambdaQueryWrapper<ChatMessageDO> messageQuery = Wrappers.lambdaQuery(ChatMessageDO.class)
-                .eq(ChatMessageDO::getResearchId, researchId);
+                .eq(ChatMessageDO::getResearchId, researchId)
+                .gt(ChatMessageDO::getSequenceNo, afterSeq)
+                .lt(beforeSeq < Integer.MAX_VALUE, ChatMessageDO::getSequenceNo, beforeSeq)
+                .orderByAsc(ChatMessageDO::getSequenceNo);
         LambdaQueryWrapper<WorkflowEventDO> eventQuery = Wrappers.lambdaQuery(WorkflowEventDO.class)
-                .eq(WorkflowEventDO::getResearchId, researchId);
-        List<ChatMessageDO> messages = chatMessageMapper.selectList(messageQuery);
-        List<WorkflowEventDO> events = workflowEventMapper.selectList(eventQuery);
-        List<TimelineItem> all = new ArrayList<>();
-        messages.stream()
+                .eq(WorkflowEventDO::getResearchId, researchId)
+                .gt(WorkflowEventDO::getSequenceNo, afterSeq)
+                .lt(beforeSeq < Integer.MAX_VALUE, WorkflowEventDO::getSequenceNo, beforeSeq)
+                .orderByAsc(WorkflowEventDO::getSequenceNo);
+        List<TimelineItem> messages = chatMessageMapper.selectList(messageQuery).stream()
             .map(m -> TimelineItem.builder()
                     .kind(KIND_MESSAGE)
                     .researchId(researchId)
                     .sequenceNo(m.getSequenceNo())
                     .message(m)
                     .build())
-            .forEach(all::add);
-        events.stream()
+            .toList();
+        List<TimelineItem> events = workflowEventMapper.selectList(eventQuery).stream()
             .map(e -> TimelineItem.builder()
                     .kind(KIND_EVENT)
                     .researchId(researchId)
                     .sequenceNo(e.getSequenceNo())
                     .event(e)
                     .build())
-            .forEach(all::add);
-        all.sort(Comparator.comparing(TimelineItem::getSequenceNo));
-        return all;
+            .toList();
+        return merge(messages, events);
+    }
+
+    /**
+     * 归并两个按 seq 升序的列表，seq 相同时保留前者
+     */
+    private List<TimelineItem> merge(List<TimelineItem> first, List<TimelineItem> second) {
+        List<TimelineItem> merged = new ArrayList<>(first.size() + second.size());
+        int i = 0;
+        int j = 0;
+        while (i < first.size() || j < second.size()) {
+            if (j >= second.size()) {
+                merged.add(first.get(i++));
+            } else if (i >= first.size()) {
+                merged.add(second.get(j++));
+            } else {
+                int a = first.get(i).getSequenceNo();
+                int b = second.get(j).getSequenceNo();
+                if (a <= b) {
+                    merged.add(first.get(i++));
+                    if (a == b) {
+                        j++;
+                    }
+                } else {
+                    merged.add(second.get(j++));
+                }
+            }
+        }
+        return merged;
     }
 
-    private String serialize(TimelineItem item) {
+    private byte[] serialize(TimelineItem item) {
         try {
-            return objectMapper.writeValueAsString(item);
-        } catch (JsonProcessingException e) {
-            log.error("TimelineItem 序列化 JSON 失败", e);
+            return timelineCodec.encode(item);
+        } catch (IOException e) {
+            log.error("TimelineItem 编码失败", e);
             return null;
         }
     }
 
-    private TimelineItem deserialize(String json) {
+    private TimelineItem deserialize(String researchId, byte[] value) {
         try {
-            return objectMapper.readValue(json, TimelineItem.class);
+            return timelineCodec.decode(researchId, value);
         } catch (Exception e) {
-            log.error("JSON 反序列化为 TimelineItem 失败 json={}", json, e);
+            log.error("TimelineItem 解码失败 researchId={}, size={}", researchId, value.length, e);
             return null;
         }
     }
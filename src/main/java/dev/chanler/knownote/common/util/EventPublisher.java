@@ -14,6 +14,8 @@ public class EventPublisher {
 
     private final CacheUtil cacheUtil;
     private final SseHub sseHub;
+    private final SequenceUtil sequenceUtil;
+    private final ReportStreamStore reportStreamStore;
 
     /**
      * 发布消息 (用户/助手对话)
@@ -42,10 +44,20 @@ public class EventPublisher {
     }
 
     /**
-     * 发布报告流 (流式输出)
+     * 发布报告流 (流式输出)，片段写入 Redis Stream，事件 ID 为 "seq:streamId"
      */
     public void publishReportStream(String researchId, String partialText) {
-        sseHub.sendReportStream(researchId, partialText);
+        int seq = sequenceUtil.current(researchId);
+        String streamId = reportStreamStore.append(researchId, seq, partialText);
+        String eventId = streamId == null ? null : seq + ":" + streamId;
+        sseHub.sendReportStream(researchId, eventId, partialText);
+    }
+
+    /**
+     * 报告已作为消息落入时间线，清理报告流
+     */
+    public void endReportStream(String researchId) {
+        reportStreamStore.delete(researchId);
     }
 
     /**
@@ -55,4 +67,11 @@ public class EventPublisher {
         TimelineItem item = cacheUtil.saveTempEvent(researchId, type, title);
         sseHub.sendTimelineItem(researchId, item);
     }
+
+    /**
+     * 推送瞬时事件（仅 SSE），用于排队位置等频繁刷新的状态，不进入时间线
+     */
+    public void publishTransientEvent(String researchId, String type, String title) {
+        sseHub.sendTimelineItem(researchId, cacheUtil.tempEvent(researchId, type, title));
+    }
 }
@@ -0,0 +1,93 @@
+package dev.chanler.knownote.common.util;
+
+import cn.hutool.core.util.NumberUtil;
+import cn.hutool.core.util.StrUtil;
+import dev.chanler.knownote.config.ResearchProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 报告流片段存储：每个研究一个 Redis Stream，供断线重连续传
+ * <p>
+ * 条目携带写入时的时间线 seq，用于与时间线重放按顺序交织
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReportStreamStore {
+
+    private static final String STREAM_KEY = "research:{}:report-stream";
+
+    // KEYS[1]=stream, ARGV[1]=maxlen, ARGV[2]=ttl, ARGV[3]=seq, ARGV[4]=text
+    private static final RedisScript<String> APPEND_SCRIPT = new DefaultRedisScript<>("""
+            local id = redis.call('XADD', KEYS[1], 'MAXLEN', '~', ARGV[1], '*', 'seq', ARGV[3], 'text', ARGV[4])
+            redis.call('EXPIRE', KEYS[1], ARGV[2])
+            return id
+            """, String.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ResearchProperties researchProperties;
+
+    /**
+     * 追加片段，返回 Stream 条目 ID；写入失败返回 null，不影响实时推送
+     */
+    public String append(String researchId, int seq, String text) {
+        ResearchProperties.Report config = researchProperties.getReport();
+        try {
+            return stringRedisTemplate.execute(APPEND_SCRIPT, List.of(key(researchId)),
+                    String.valueOf(config.getStreamMaxLen()), String.valueOf(config.getStreamTtlSeconds()),
+                    String.valueOf(seq), text);
+        } catch (Exception e) {
+            log.warn("报告流片段写入失败 researchId={}", researchId, e);
+            return null;
+        }
+    }
+
+    /**
+     * 读取 afterId 之后的片段，afterId 为空时从头读取
+     */
+    public List<Chunk> readAfter(String researchId, String afterId) {
+        Range<String> range = StrUtil.isBlank(afterId)
+                ? Range.unbounded()
+                : Range.rightUnbounded(Range.Bound.exclusive(afterId));
+        List<MapRecord<String, Object, Object>> records;
+        try {
+            records = stringRedisTemplate.opsForStream().range(key(researchId), range);
+        } catch (Exception e) {
+            log.warn("报告流片段读取失败 researchId={}, afterId={}", researchId, afterId, e);
+            return List.of();
+        }
+        if (records == null || records.isEmpty()) {
+            return List.of();
+        }
+        List<Chunk> chunks = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            Map<Object, Object> fields = record.getValue();
+            chunks.add(new Chunk(record.getId().getValue(),
+                    NumberUtil.parseInt(String.valueOf(fields.get("seq")), 0),
+                    String.valueOf(fields.get("text"))));
+        }
+        return chunks;
+    }
+
+    public void delete(String researchId) {
+        stringRedisTemplate.delete(key(researchId));
+    }
+
+    private String key(String researchId) {
+        return StrUtil.format(STREAM_KEY, researchId);
+    }
+
+    public record Chunk(String id, int seq, String text) {
+    }
+}
@@ -0,0 +1,114 @@
+package dev.chanler.knownote.common.util;
+
+import cn.hutool.core.util.StrUtil;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import dev.chanler.knownote.config.ResearchProperties;
+import dev.chanler.knownote.research.state.ResearchCheckpoint;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 研究检查点 Redis 存储
+ * <p>
+ * 格式：[原始长度 4B][LZ4 压缩的 Smile 负载]；写入失败只记录日志，不影响研究执行
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ResearchCheckpointStore {
+
+    private static final String CHECKPOINT_KEY = "research:{}:checkpoint";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+    private final ResearchProperties researchProperties;
+
+    private ObjectMapper smileMapper;
+    private LZ4Compressor compressor;
+    private LZ4FastDecompressor decompressor;
+
+    @PostConstruct
+    public void init() {
+        smileMapper = objectMapper.copyWith(new SmileFactory())
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        LZ4Factory factory = LZ4Factory.fastestInstance();
+        compressor = factory.fastCompressor();
+        decompressor = factory.fastDecompressor();
+    }
+
+    public boolean isEnabled() {
+        return researchProperties.getCheckpoint().isEnabled();
+    }
+
+    public void save(String researchId, ResearchCheckpoint checkpoint) {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            byte[] payload = smileMapper.writeValueAsBytes(checkpoint);
+            byte[] compressed = new byte[compressor.maxCompressedLength(payload.length)];
+            int compressedLength = compressor.compress(payload, 0, payload.length, compressed, 0);
+            byte[] value = ByteBuffer.allocate(Integer.BYTES + compressedLength)
+                    .putInt(payload.length).put(compressed, 0, compressedLength).array();
+            long ttlSeconds = TimeUnit.HOURS.toSeconds(researchProperties.getCheckpoint().getTtlHours());
+            stringRedisTemplate.execute((RedisCallback<Boolean>) connection -> connection.stringCommands()
+                    .set(key(researchId), value, Expiration.seconds(ttlSeconds), RedisStringCommands.SetOption.upsert()));
+            log.debug("研究检查点已保存 researchId={}, phase={}, bytes={}", researchId, checkpoint.getPhase(), value.length);
+        } catch (Exception e) {
+            log.warn("研究检查点保存失败 researchId={}, phase={}", researchId, checkpoint.getPhase(), e);
+        }
+    }
+
+    /**
+     * 读取检查点，不存在或无法解析时返回 null
+     */
+    public ResearchCheckpoint load(String researchId) {
+        if (!isEnabled()) {
+            return null;
+        }
+        try {
+            byte[] value = stringRedisTemplate.execute((RedisCallback<byte[]>) connection ->
+                    connection.stringCommands().get(key(researchId)));
+            if (value == null || value.length < Integer.BYTES) {
+                return null;
+            }
+            int length = ByteBuffer.wrap(value, 0, Integer.BYTES).getInt();
+            byte[] payload = new byte[length];
+            decompressor.decompress(value, Integer.BYTES, payload, 0, length);
+            return smileMapper.readValue(payload, ResearchCheckpoint.class);
+        } catch (Exception e) {
+            log.warn("研究检查点读取失败 researchId={}", researchId, e);
+            return null;
+        }
+    }
+
+    public void delete(String researchId) {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.delete(StrUtil.format(CHECKPOINT_KEY, researchId));
+        } catch (Exception e) {
+            log.warn("研究检查点删除失败 researchId={}", researchId, e);
+        }
+    }
+
+    private byte[] key(String researchId) {
+        return StrUtil.format(CHECKPOINT_KEY, researchId).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -1,29 +1,63 @@
 package dev.chanler.knownote.common.util;
 
+import cn.hutool.core.util.StrUtil;
 import dev.chanler.knownote.research.domain.mapper.ChatMessageMapper;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 研究流程事件序号生成器
+ * <p>
+ * 序号由 Redis INCR 分配，研究在节点间交接后仍由同一计数器续号；计数器不存在时以表内 MAX(seq) 为起点。
+ * Redis 不可用时退化为本节点计数
  */
 @Component
 @RequiredArgsConstructor
+@Slf4j
 public class SequenceUtil {
 
+    private static final String SEQUENCE_KEY = "research:{}:seq";
+    private static final long SEQUENCE_TTL_SECONDS = 24 * 3600;
+
+    // KEYS[1]=计数器, ARGV[1]=起点（空表示未加载）, ARGV[2]=ttl；计数器不存在且未给起点时返回 -1
+    private static final RedisScript<Long> NEXT_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                if ARGV[1] == '' then
+                    return -1
+                end
+                redis.call('SET', KEYS[1], ARGV[1])
+            end
+            local value = redis.call('INCR', KEYS[1])
+            redis.call('EXPIRE', KEYS[1], ARGV[2])
+            return value
+            """, Long.class);
+
     private final ChatMessageMapper chatMessageMapper;
+    private final StringRedisTemplate stringRedisTemplate;
+    // 本节点最近分配的序号，Redis 不可用时作为本地计数器
     private final Map<String, AtomicLong> sseSequences = new ConcurrentHashMap<>();
 
     public int next(String researchId) {
-        AtomicLong counter = sseSequences.computeIfAbsent(researchId, k -> {
-            Integer maxSeq = chatMessageMapper.selectMaxSequenceByResearchId(researchId);
-            return new AtomicLong(maxSeq == null ? 0L : maxSeq);
-        });
-        long value = counter.incrementAndGet();
+        long value;
+        try {
+            value = increment(researchId, "");
+            if (value < 0) {
+                value = increment(researchId, String.valueOf(maxSequence(researchId)));
+            }
+        } catch (Exception e) {
+            log.warn("序号计数器不可用，使用本节点计数 researchId={}", researchId, e);
+            return (int) local(researchId).incrementAndGet();
+        }
+        sseSequences.computeIfAbsent(researchId, k -> new AtomicLong()).accumulateAndGet(value, Math::max);
         return (int) value;
     }
 
@@ -32,7 +66,41 @@ public class SequenceUtil {
         return counter == null ? 0 : (int) counter.get();
     }
 
+    /**
+     * 清理本节点状态，交接给其他节点时调用，共享计数器保留
+     */
     public void reset(String researchId) {
         sseSequences.remove(researchId);
     }
+
+    /**
+     * 研究结束：清理本节点状态并删除共享计数器，再次运行时从已落库的 MAX(seq) 续号，调用前需先刷出时间线
+     */
+    public void remove(String researchId) {
+        sseSequences.remove(researchId);
+        try {
+            stringRedisTemplate.delete(key(researchId));
+        } catch (Exception e) {
+            log.warn("序号计数器清理失败 researchId={}", researchId, e);
+        }
+    }
+
+    private long increment(String researchId, String seed) {
+        Long value = stringRedisTemplate.execute(NEXT_SCRIPT, List.of(key(researchId)),
+                seed, String.valueOf(SEQUENCE_TTL_SECONDS));
+        return value == null ? -1 : value;
+    }
+
+    private AtomicLong local(String researchId) {
+        return sseSequences.computeIfAbsent(researchId, k -> new AtomicLong(maxSequence(researchId)));
+    }
+
+    private long maxSequence(String researchId) {
+        Integer maxSeq = chatMessageMapper.selectMaxSequenceByResearchId(researchId);
+        return maxSeq == null ? 0L : maxSeq;
+    }
+
+    private String key(String researchId) {
+        return StrUtil.format(SEQUENCE_KEY, researchId);
+    }
 }
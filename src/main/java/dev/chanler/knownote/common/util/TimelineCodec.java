@@ -0,0 +1,124 @@
+package dev.chanler.knownote.common.util;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import dev.chanler.knownote.config.ResearchProperties;
+import dev.chanler.knownote.research.data.TimelineItem;
+import dev.chanler.knownote.research.domain.entity.ChatMessageDO;
+import dev.chanler.knownote.research.domain.entity.WorkflowEventDO;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 时间线条目编解码
+ * <p>
+ * 格式：[版本 1B][编码 1B][标志 1B][原始长度 4B，仅压缩时][负载]。
+ * 负载省略 researchId（由 key 还原），编码可选 JSON / Smile，超过阈值时 LZ4 压缩；
+ * 以 '{' 开头的旧条目按完整 JSON 解码
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TimelineCodec {
+
+    private static final byte VERSION_1 = 1;
+    private static final byte FORMAT_JSON = 'J';
+    private static final byte FORMAT_SMILE = 'S';
+    private static final byte FLAG_LZ4 = 1;
+    private static final int HEADER_SIZE = 3;
+
+    private final ObjectMapper objectMapper;
+    private final ResearchProperties researchProperties;
+
+    private ObjectMapper compactJsonMapper;
+    private ObjectMapper smileMapper;
+    private LZ4Compressor compressor;
+    private LZ4FastDecompressor decompressor;
+    private byte format;
+
+    @PostConstruct
+    public void init() {
+        compactJsonMapper = withoutResearchId(objectMapper.copy());
+        smileMapper = withoutResearchId(objectMapper.copyWith(new SmileFactory()));
+        LZ4Factory factory = LZ4Factory.fastestInstance();
+        compressor = factory.fastCompressor();
+        decompressor = factory.fastDecompressor();
+        String codec = researchProperties.getTimeline().getCodec();
+        format = "json".equalsIgnoreCase(codec) ? FORMAT_JSON : FORMAT_SMILE;
+        log.info("时间线编码初始化完成: codec={}, compressThresholdBytes={}",
+                format == FORMAT_JSON ? "json" : "smile", researchProperties.getTimeline().getCompressThresholdBytes());
+    }
+
+    public byte[] encode(TimelineItem item) throws IOException {
+        byte[] payload = (format == FORMAT_SMILE ? smileMapper : compactJsonMapper).writeValueAsBytes(item);
+        if (payload.length < researchProperties.getTimeline().getCompressThresholdBytes()) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+            buffer.put(VERSION_1).put(format).put((byte) 0).put(payload);
+            return buffer.array();
+        }
+        byte[] compressed = new byte[compressor.maxCompressedLength(payload.length)];
+        int compressedLength = compressor.compress(payload, 0, payload.length, compressed, 0);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + Integer.BYTES + compressedLength);
+        buffer.put(VERSION_1).put(format).put(FLAG_LZ4).putInt(payload.length).put(compressed, 0, compressedLength);
+        return buffer.array();
+    }
+
+    public TimelineItem decode(String researchId, byte[] data) throws IOException {
+        if (data.length == 0) {
+            throw new IOException("时间线条目为空");
+        }
+        if (data[0] == '{') {
+            return restore(objectMapper.readValue(data, TimelineItem.class), researchId);
+        }
+        if (data[0] != VERSION_1 || data.length < HEADER_SIZE) {
+            throw new IOException("未知的时间线条目版本: " + data[0]);
+        }
+        ObjectMapper mapper = switch (data[1]) {
+            case FORMAT_JSON -> compactJsonMapper;
+            case FORMAT_SMILE -> smileMapper;
+            default -> throw new IOException("未知的时间线条目编码: " + data[1]);
+        };
+        byte[] payload;
+        if ((data[2] & FLAG_LZ4) != 0) {
+            int length = ByteBuffer.wrap(data, HEADER_SIZE, Integer.BYTES).getInt();
+            payload = new byte[length];
+            decompressor.decompress(data, HEADER_SIZE + Integer.BYTES, payload, 0, length);
+        } else {
+            payload = Arrays.copyOfRange(data, HEADER_SIZE, data.length);
+        }
+        return restore(mapper.readValue(payload, TimelineItem.class), researchId);
+    }
+
+    private TimelineItem restore(TimelineItem item, String researchId) {
+        if (item.getResearchId() == null) {
+            item.setResearchId(researchId);
+        }
+        if (item.getMessage() != null && item.getMessage().getResearchId() == null) {
+            item.getMessage().setResearchId(researchId);
+        }
+        if (item.getEvent() != null && item.getEvent().getResearchId() == null) {
+            item.getEvent().setResearchId(researchId);
+        }
+        return item;
+    }
+
+    private static ObjectMapper withoutResearchId(ObjectMapper mapper) {
+        return mapper.addMixIn(TimelineItem.class, ResearchIdIgnored.class)
+                .addMixIn(ChatMessageDO.class, ResearchIdIgnored.class)
+                .addMixIn(WorkflowEventDO.class, ResearchIdIgnored.class);
+    }
+
+    @JsonIgnoreProperties(value = "researchId", ignoreUnknown = true)
+    private abstract static class ResearchIdIgnored {
+    }
+}
@@ -0,0 +1,76 @@
+package dev.chanler.knownote.common.util;
+
+import dev.chanler.knownote.config.ResearchProperties;
+import dev.chanler.knownote.research.domain.mapper.ChatMessageMapper;
+import dev.chanler.knownote.research.domain.mapper.WorkflowEventMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 时间线记录 ID 号段分配器
+ * <p>
+ * 消息与事件异步批量落库前就需要 ID（事件 ID 会作为 parentEventId），因此由 Redis 按号段预分配，
+ * 号段下限不低于表内 MAX(id) 与本节点已领取的最大号段上界，避免 Redis 数据丢失后 ID 回退；
+ * 表内 MAX(id) 落后于各节点尚未落库的记录，Redis 计数丢失后重建时再跳过若干号段，留给其他节点在途的 ID
+ */
+@Component
+@RequiredArgsConstructor
+public class TimelineIdAllocator {
+
+    private static final String MESSAGE_ID_KEY = "research:chat_message:id";
+    private static final String EVENT_ID_KEY = "research:workflow_event:id";
+    private static final long RESEED_GAP_SEGMENTS = 1000;
+    // ARGV[1]=下限, ARGV[2]=号段大小, ARGV[3]=计数丢失时额外跳过的 ID 数
+    private static final RedisScript<Long> ALLOCATE_SCRIPT = new DefaultRedisScript<>("""
+            local current = redis.call('GET', KEYS[1])
+            local floor = tonumber(ARGV[1])
+            if not current then
+                redis.call('SET', KEYS[1], floor + tonumber(ARGV[3]))
+            elseif tonumber(current) < floor then
+                redis.call('SET', KEYS[1], floor)
+            end
+            return redis.call('INCRBY', KEYS[1], ARGV[2])
+            """, Long.class);
+
+    private final ChatMessageMapper chatMessageMapper;
+    private final WorkflowEventMapper workflowEventMapper;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ResearchProperties researchProperties;
+
+    private final Segment messageSegment = new Segment();
+    private final Segment eventSegment = new Segment();
+
+    public long nextMessageId() {
+        return messageSegment.next(MESSAGE_ID_KEY, chatMessageMapper::selectMaxId);
+    }
+
+    public long nextEventId() {
+        return eventSegment.next(EVENT_ID_KEY, workflowEventMapper::selectMaxId);
+    }
+
+    private class Segment {
+        private long next;
+        private long limit;
+
+        synchronized long next(String key, Supplier<Long> maxIdLoader) {
+            if (next >= limit) {
+                int segmentSize = researchProperties.getTimeline().getIdSegmentSize();
+                Long maxId = maxIdLoader.get();
+                // 本节点领取过的号段可能仍有记录在写入缓冲或重试队列中，下限取两者较大值
+                long floor = Math.max(maxId == null ? 0L : maxId, limit);
+                Long upper = stringRedisTemplate.execute(ALLOCATE_SCRIPT, List.of(key),
+                        String.valueOf(floor), String.valueOf(segmentSize),
+                        String.valueOf(segmentSize * RESEED_GAP_SEGMENTS));
+                limit = upper;
+                next = upper - segmentSize;
+            }
+            return ++next;
+        }
+    }
+}
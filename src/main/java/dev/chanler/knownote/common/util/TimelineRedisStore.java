@@ -0,0 +1,174 @@
+package dev.chanler.knownote.common.util;
+
+import cn.hutool.core.collection.CollectionUtil;
+import cn.hutool.core.util.StrUtil;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.zset.DefaultTuple;
+import org.springframework.data.redis.connection.zset.Tuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 研究时间线 Redis ZSet 存储
+ * <p>
+ * 写入与过期、读取与续期各合并为一次 Lua 调用；DB 回填走 Pipeline 分块写入。
+ * floor 键记录 ZSet 中连续覆盖的最小 seq，[floor, +inf) 以 Redis 为准，以下按需从 DB 补齐
+ */
+@Component
+@RequiredArgsConstructor
+public class TimelineRedisStore {
+
+    private static final String TIMELINE_KEY = "research:{}:timeline";
+    private static final String FLOOR_KEY = "research:{}:timeline:floor";
+    private static final long TIMELINE_TTL_SECONDS = 30 * 60;
+    private static final int BULK_CHUNK_SIZE = 200;
+
+    // KEYS[1]=timeline, KEYS[2]=floor, ARGV[1]=ttl, ARGV[2]=本批最小正 seq（无则 0）, ARGV[3..]=score/member 成对
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> ADD_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('ZADD', KEYS[1], unpack(ARGV, 3))
+            redis.call('EXPIRE', KEYS[1], ARGV[1])
+            if tonumber(ARGV[2]) > 0 then
+                redis.call('SET', KEYS[2], ARGV[2], 'NX')
+            end
+            redis.call('EXPIRE', KEYS[2], ARGV[1])
+            return {}
+            """, List.class);
+
+    // KEYS[1]=timeline, KEYS[2]=floor, ARGV[1]=min, ARGV[2]=max, ARGV[3]=ttl；返回 {floor 或 '', values...}
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> RANGE_SCRIPT = new DefaultRedisScript<>("""
+            local values = redis.call('ZRANGEBYSCORE', KEYS[1], ARGV[1], ARGV[2])
+            local floor = redis.call('GET', KEYS[2])
+            if #values > 0 or floor then
+                redis.call('EXPIRE', KEYS[1], ARGV[3])
+                redis.call('EXPIRE', KEYS[2], ARGV[3])
+            end
+            table.insert(values, 1, floor or '')
+            return values
+            """, List.class);
+
+    // KEYS[1]=floor, ARGV[1]=新下界, ARGV[2]=ttl；只降不升
+    private static final byte[] LOWER_FLOOR_SCRIPT = bytes("""
+            local current = tonumber(redis.call('GET', KEYS[1]))
+            if not current or tonumber(ARGV[1]) < current then
+                redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[2])
+            else
+                redis.call('EXPIRE', KEYS[1], ARGV[2])
+            end
+            return 1
+            """);
+
+    // 多条返回值逐个按 byte[] 反序列化
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static final RedisSerializer<List> RESULT_SERIALIZER = (RedisSerializer) RedisSerializer.byteArray();
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 写入少量条目并刷新过期时间，一次往返；首次写入时以本批最小 seq 作为 floor
+     */
+    public void add(String researchId, List<Entry> entries) {
+        if (CollectionUtil.isEmpty(entries)) {
+            return;
+        }
+        long minSeq = 0;
+        List<byte[]> args = new ArrayList<>(entries.size() * 2 + 2);
+        args.add(bytes(String.valueOf(TIMELINE_TTL_SECONDS)));
+        args.add(null);
+        for (Entry entry : entries) {
+            long seq = (long) entry.score();
+            if (seq > 0 && (minSeq == 0 || seq < minSeq)) {
+                minSeq = seq;
+            }
+            args.add(bytes(String.valueOf(entry.score())));
+            args.add(entry.value());
+        }
+        args.set(1, bytes(String.valueOf(minSeq)));
+        stringRedisTemplate.execute(ADD_SCRIPT, RedisSerializer.byteArray(), RESULT_SERIALIZER,
+                List.of(key(researchId), floorKey(researchId)), args.toArray());
+    }
+
+    /**
+     * 按分数区间读取并续期，一次往返；同时返回当前 floor
+     */
+    @SuppressWarnings("unchecked")
+    public Range range(String researchId, double min, double max) {
+        List<byte[]> values = stringRedisTemplate.execute(RANGE_SCRIPT, RedisSerializer.byteArray(), RESULT_SERIALIZER,
+                List.of(key(researchId), floorKey(researchId)),
+                bytes(scoreArg(min)), bytes(scoreArg(max)), bytes(String.valueOf(TIMELINE_TTL_SECONDS)));
+        if (CollectionUtil.isEmpty(values)) {
+            return new Range(null, List.of());
+        }
+        String floor = values.get(0) == null ? null : new String(values.get(0), StandardCharsets.UTF_8);
+        return new Range(StrUtil.isBlank(floor) ? null : Integer.valueOf(floor), values.subList(1, values.size()));
+    }
+
+    /**
+     * 批量回填区间 [floor, 原 floor)，分块 ZADD、EXPIRE 与 floor 下移在同一个 Pipeline 中发送
+     */
+    public void bulkLoad(String researchId, List<Entry> entries, int floor) {
+        byte[] key = bytes(key(researchId));
+        byte[] floorKey = bytes(floorKey(researchId));
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (List<Entry> chunk : CollectionUtil.split(entries, BULK_CHUNK_SIZE)) {
+                zAdd(connection, key, chunk);
+            }
+            connection.keyCommands().expire(key, TIMELINE_TTL_SECONDS);
+            connection.scriptingCommands().eval(LOWER_FLOOR_SCRIPT, ReturnType.INTEGER, 1,
+                    floorKey, bytes(String.valueOf(floor)), bytes(String.valueOf(TIMELINE_TTL_SECONDS)));
+            return null;
+        });
+    }
+
+    private void zAdd(RedisConnection connection, byte[] key, List<Entry> chunk) {
+        Set<Tuple> tuples = new HashSet<>(chunk.size() * 2);
+        for (Entry entry : chunk) {
+            tuples.add(new DefaultTuple(entry.value(), entry.score()));
+        }
+        connection.zSetCommands().zAdd(key, tuples);
+    }
+
+    private String key(String researchId) {
+        return StrUtil.format(TIMELINE_KEY, researchId);
+    }
+
+    private String floorKey(String researchId) {
+        return StrUtil.format(FLOOR_KEY, researchId);
+    }
+
+    private String scoreArg(double score) {
+        if (score == Double.POSITIVE_INFINITY) {
+            return "+inf";
+        }
+        if (score == Double.NEGATIVE_INFINITY) {
+            return "-inf";
+        }
+        return String.valueOf((long) score);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public record Entry(double score, byte[] value) {
+    }
+
+    /**
+     * 区间读取结果，floor 为 null 表示 Redis 中没有可信的连续区间
+     */
+    public record Range(Integer floor, List<byte[]> values) {
+    }
+}
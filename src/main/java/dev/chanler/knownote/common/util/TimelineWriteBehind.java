@@ -0,0 +1,292 @@
+package dev.chanler.knownote.common.util;
+
+import cn.hutool.core.collection.CollectionUtil;
+import dev.chanler.knownote.config.ResearchProperties;
+import dev.chanler.knownote.research.domain.entity.ChatMessageDO;
+import dev.chanler.knownote.research.domain.entity.WorkflowEventDO;
+import dev.chanler.knownote.research.domain.mapper.ChatMessageMapper;
+import dev.chanler.knownote.research.domain.mapper.WorkflowEventMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 时间线异步批量落库
+ * <p>
+ * 消息与事件先进入有界队列，按批量大小或时间间隔合并为多行 INSERT；
+ * 队列满时由调用线程同步刷盘形成背压。逐条重试仍失败的记录进入重试队列，
+ * 按 write-retry-interval-ms 间隔重试至 max-write-retries 次，避免短暂的数据库故障丢失时间线
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TimelineWriteBehind {
+
+    private final ChatMessageMapper chatMessageMapper;
+    private final WorkflowEventMapper workflowEventMapper;
+    private final TimelineIdAllocator timelineIdAllocator;
+    private final ResearchProperties researchProperties;
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private BlockingQueue<Object> queue;
+    // 只在 flushLock 内读写
+    private final Deque<FailedRow> failed = new ArrayDeque<>();
+    private Thread flusher;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void init() {
+        ResearchProperties.Timeline timeline = researchProperties.getTimeline();
+        queue = new ArrayBlockingQueue<>(timeline.getQueueCapacity());
+        running = true;
+        flusher = Thread.ofPlatform().name("timeline-writer").daemon(true).start(this::loop);
+        log.info("时间线批量落库初始化完成: writeBehind={}, batchSize={}, flushIntervalMs={}, queueCapacity={}",
+                timeline.isWriteBehind(), timeline.getBatchSize(), timeline.getFlushIntervalMs(), timeline.getQueueCapacity());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        LockSupport.unpark(flusher);
+        flush();
+        int pending = pendingRetries();
+        if (pending > 0) {
+            log.error("关闭时仍有时间线记录未能落库 count={}", pending);
+        }
+    }
+
+    public void save(ChatMessageDO message) {
+        enqueue(message);
+    }
+
+    public void save(WorkflowEventDO event) {
+        enqueue(event);
+    }
+
+    /**
+     * 同步刷出当前队列中的全部记录，返回后此前入队的记录均已落库或进入重试队列
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            retryFailed();
+            int batchSize = researchProperties.getTimeline().getBatchSize();
+            List<Object> batch = new ArrayList<>(batchSize);
+            while (queue.drainTo(batch, batchSize) > 0) {
+                persist(batch);
+                batch.clear();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 等待重试的记录数
+     */
+    public int pendingRetries() {
+        flushLock.lock();
+        try {
+            return failed.size();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void enqueue(Object row) {
+        ResearchProperties.Timeline timeline = researchProperties.getTimeline();
+        if (!timeline.isWriteBehind()) {
+            // 未启用异步落库时保持同步写入语义，失败直接抛给调用方
+            insert(row);
+            return;
+        }
+        if (!running) {
+            persistNow(row);
+            return;
+        }
+        try {
+            if (!queue.offer(row, timeline.getOfferTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                log.warn("时间线落库队列已满，调用线程同步刷盘 size={}", queue.size());
+                flush();
+                if (!queue.offer(row)) {
+                    persistNow(row);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            persistNow(row);
+            return;
+        }
+        if (queue.size() >= timeline.getBatchSize()) {
+            LockSupport.unpark(flusher);
+        }
+    }
+
+    private void loop() {
+        while (running) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(researchProperties.getTimeline().getFlushIntervalMs()));
+            try {
+                flush();
+            } catch (Exception e) {
+                log.error("时间线批量落库失败", e);
+            }
+        }
+    }
+
+    private void persist(List<Object> rows) {
+        List<ChatMessageDO> messages = new ArrayList<>();
+        List<WorkflowEventDO> events = new ArrayList<>();
+        for (Object row : rows) {
+            if (row instanceof ChatMessageDO message) {
+                messages.add(message);
+            } else if (row instanceof WorkflowEventDO event) {
+                events.add(event);
+            }
+        }
+        if (CollectionUtil.isNotEmpty(messages)) {
+            try {
+                chatMessageMapper.insertBatch(messages);
+            } catch (Exception e) {
+                log.error("消息批量落库失败，逐条重试 size={}", messages.size(), e);
+                messages.forEach(this::insertOrDefer);
+            }
+        }
+        if (CollectionUtil.isNotEmpty(events)) {
+            try {
+                workflowEventMapper.insertBatch(events);
+            } catch (Exception e) {
+                log.error("事件批量落库失败，逐条重试 size={}", events.size(), e);
+                events.forEach(this::insertOrDefer);
+            }
+        }
+    }
+
+    private void persistNow(Object row) {
+        flushLock.lock();
+        try {
+            persist(List.of(row));
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 逐条重试失败的记录进入重试队列，调用方需持有 flushLock
+     */
+    private void insertOrDefer(Object row) {
+        try {
+            insert(row);
+        } catch (Exception e) {
+            log.error("时间线记录落库失败，稍后重试 type={}", row.getClass().getSimpleName(), e);
+            defer(new FailedRow(row, 1, nextRetryNanos()));
+        }
+    }
+
+    private void retryFailed() {
+        int maxRetries = researchProperties.getTimeline().getMaxWriteRetries();
+        long now = System.nanoTime();
+        for (int i = failed.size(); i > 0; i--) {
+            FailedRow entry = failed.pollFirst();
+            if (now - entry.nextAttemptNanos() < 0) {
+                failed.addLast(entry);
+                continue;
+            }
+            try {
+                insert(entry.row());
+            } catch (Exception e) {
+                if (entry.attempts() >= maxRetries) {
+                    log.error("时间线记录重试 {} 次仍失败，放弃 row={}", entry.attempts(), entry.row(), e);
+                } else {
+                    log.warn("时间线记录重试失败 attempts={}, type={}", entry.attempts(), entry.row().getClass().getSimpleName());
+                    failed.addLast(new FailedRow(entry.row(), entry.attempts() + 1, nextRetryNanos()));
+                }
+            }
+        }
+    }
+
+    private void defer(FailedRow entry) {
+        if (failed.size() >= researchProperties.getTimeline().getQueueCapacity()) {
+            FailedRow dropped = failed.pollFirst();
+            log.error("时间线重试队列已满，放弃最早的记录 row={}", dropped.row());
+        }
+        failed.addLast(entry);
+    }
+
+    private long nextRetryNanos() {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(researchProperties.getTimeline().getWriteRetryIntervalMs());
+    }
+
+    private void insert(Object row) {
+        try {
+            doInsert(row);
+        } catch (DuplicateKeyException e) {
+            if (alreadyPersisted(row)) {
+                // 上次写入实际已成功
+                log.debug("时间线记录已存在 type={}", row.getClass().getSimpleName());
+                return;
+            }
+            reassignId(row);
+            doInsert(row);
+        }
+    }
+
+    private void doInsert(Object row) {
+        if (row instanceof ChatMessageDO message) {
+            chatMessageMapper.insert(message);
+        } else if (row instanceof WorkflowEventDO event) {
+            workflowEventMapper.insert(event);
+        }
+    }
+
+    /**
+     * 主键冲突时按 ID 读回已有记录，研究与序列号一致才视为同一条
+     */
+    private boolean alreadyPersisted(Object row) {
+        if (row instanceof ChatMessageDO message) {
+            ChatMessageDO existing = chatMessageMapper.selectById(message.getId());
+            return existing != null && Objects.equals(existing.getResearchId(), message.getResearchId())
+                    && Objects.equals(existing.getSequenceNo(), message.getSequenceNo());
+        }
+        if (row instanceof WorkflowEventDO event) {
+            WorkflowEventDO existing = workflowEventMapper.selectById(event.getId());
+            return existing != null && Objects.equals(existing.getResearchId(), event.getResearchId())
+                    && Objects.equals(existing.getSequenceNo(), event.getSequenceNo());
+        }
+        return false;
+    }
+
+    /**
+     * ID 已被其他记录占用，重新分配；事件的子事件仍指向原 ID，层级关系会丢失
+     */
+    private void reassignId(Object row) {
+        if (row instanceof ChatMessageDO message) {
+            Long previous = message.getId();
+            message.setId(timelineIdAllocator.nextMessageId());
+            log.error("消息 ID 冲突，重新分配 researchId={}, seq={}, id={} -> {}",
+                    message.getResearchId(), message.getSequenceNo(), previous, message.getId());
+        } else if (row instanceof WorkflowEventDO event) {
+            Long previous = event.getId();
+            event.setId(timelineIdAllocator.nextEventId());
+            log.error("事件 ID 冲突，重新分配，子事件的父级关系将失效 researchId={}, seq={}, id={} -> {}",
+                    event.getResearchId(), event.getSequenceNo(), previous, event.getId());
+        }
+    }
+
+    private record FailedRow(Object row, int attempts, long nextAttemptNanos) {
+    }
+}
@@ -0,0 +1,31 @@
+package dev.chanler.knownote.config;
+
+import cn.hutool.core.util.StrUtil;
+import lombok.RequiredArgsConstructor;
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.config.Config;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+
+/**
+ * Redisson 客户端，复用 spring.data.redis 连接配置；按需创建
+ */
+@Configuration
+@RequiredArgsConstructor
+public class RedissonConfig {
+    private final RedisProperties redisProperties;
+
+    @Bean(destroyMethod = "shutdown")
+    @Lazy
+    public RedissonClient redissonClient() {
+        Config config = new Config();
+        config.useSingleServer()
+            .setAddress(StrUtil.format("redis://{}:{}", redisProperties.getHost(), redisProperties.getPort()))
+            .setPassword(StrUtil.emptyToNull(redisProperties.getPassword()))
+            .setDatabase(redisProperties.getDatabase());
+        return Redisson.create(config);
+    }
+}
@@ -1,5 +1,6 @@
 package dev.chanler.knownote.config;
 
+import dev.chanler.knownote.common.sse.SseOverflowPolicy;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
@@ -17,12 +18,122 @@ public class ResearchProperties {
     private Async async = new Async();
     private Budget budget = new Budget();
     private Model model = new Model();
+    private Search search = new Search();
+    private SummaryCache summaryCache = new SummaryCache();
+    private Timeline timeline = new Timeline();
+    private Sse sse = new Sse();
+    private Report report = new Report();
+    private Checkpoint checkpoint = new Checkpoint();
+    private Limiter limiter = new Limiter();
+    private Memory memory = new Memory();
+    private Researcher researcher = new Researcher();
 
     @Data
     public static class Async {
         private int maxPoolSize = 10;
         private int queueCapacity = 50;
         private int taskTimeoutMinutes = 3;
+        private int unitPoolSize = 16;
+        private String mode = "platform";
+        private int maxActiveResearch = 100;
+        private String queue = "local";
+        private int visibilityTimeoutSeconds = 60;
+        private long pollIntervalMs = 500;
+        private int reapIntervalSeconds = 10;
+        private int maxRunningPerUser = 3;
+        private double etaAlpha = 0.2;
+        private int etaSampleSize = 256;
+        private int etaSeedLimit = 1000;
+        private double etaAdmissionPercentile = 0.9;
+        private int maxPredictedWaitMinutes = 30;
+        private long cancelPollMs = 1000;
+        private int drainTimeoutSeconds = 45;
+        private int scopePoolSize = 8;
+        private int scopeQueueCapacity = 200;
+    }
+
+    @Data
+    public static class Search {
+        private int summarizeTimeoutSeconds = 60;
+    }
+
+    @Data
+    public static class Researcher {
+        private boolean incrementalCompression = true;
+        private int foldWaitSeconds = 120;
+        private int compressChunkTokens = 32000;
+    }
+
+    @Data
+    public static class SummaryCache {
+        private boolean enabled = true;
+        private long localMaxWeightBytes = 64 * 1024 * 1024;
+        private int localExpireHours = 6;
+        private int redisTtlHours = 72;
+    }
+
+    @Data
+    public static class Timeline {
+        private boolean writeBehind = true;
+        private int batchSize = 100;
+        private long flushIntervalMs = 200;
+        private int queueCapacity = 5000;
+        private long offerTimeoutMs = 50;
+        private int maxWriteRetries = 30;
+        private long writeRetryIntervalMs = 2000;
+        private int idSegmentSize = 100;
+        private String codec = "smile";
+        private int compressThresholdBytes = 4096;
+    }
+
+    @Data
+    public static class Sse {
+        private boolean cluster = false;
+        private int queueCapacity = 256;
+        private SseOverflowPolicy overflowPolicy = SseOverflowPolicy.COALESCE;
+        private long lingerMs = 5;
+        private int maxBatchSize = 64;
+        private long reconnectDelayMs = 1000;
+        private long subscribeTimeoutMs = 2000;
+    }
+
+    @Data
+    public static class Report {
+        private boolean streaming = true;
+        private int chunkMaxChars = 64;
+        private long chunkIntervalMs = 100;
+        private int streamTimeoutSeconds = 600;
+        private int streamMaxLen = 5000;
+        private long streamTtlSeconds = 1800;
+    }
+
+    @Data
+    public static class Checkpoint {
+        private boolean enabled = true;
+        private int ttlHours = 24;
+    }
+
+    @Data
+    public static class Limiter {
+        private boolean enabled = true;
+        private double backoffRatio = 0.9;
+        private double latencyTolerance = 2.0;
+        private long backoffWindowMs = 2000;
+        private int minActiveResearch = 1;
+        private int minModelRequests = 2;
+        private int maxModelRequests = 64;
+    }
+
+    @Data
+    public static class Memory {
+        private int keepRecentMessages = 6;
+        private int digestChars = 400;
+        private int scopeMaxTokens = 16000;
+        private int supervisorMaxTokens = 24000;
+        private int researcherMaxTokens = 24000;
+        private int researcherVerbatimMaxTokens = 96000;
+        private int searchMaxTokens = 16000;
+        private int reportMaxTokens = 64000;
     }
 
     @Data
@@ -42,6 +153,8 @@ public class ResearchProperties {
         private int maxConductCount;
         private int maxSearchCount;
         private int maxConcurrentUnits;
+        private int cost = 1;
+        private int timeoutMinutes;
     }
 
     @Data
@@ -51,5 +164,11 @@ public class ResearchProperties {
         private String model;
         private String baseUrl;
         private String apiKey;
+        private int maxConcurrentSummaries = 4;
+        private int maxConcurrentRequests = 16;
+        private int requestsPerMinute = 0;
+        private int tokensPerMinute = 0;
+        private int estimatedOutputTokens = 1024;
+        private int rateLimitWaitSeconds = 120;
     }
 }
@@ -4,6 +4,10 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Tavily API 配置
  */
@@ -13,4 +17,30 @@ import org.springframework.stereotype.Component;
 public class TavilyProperties {
     private String apiKey;
     private String baseUrl;
+    private int maxConnections = 32;
+    private int executorThreads = 4;
+    private Duration connectTimeout = Duration.ofSeconds(5);
+    private Duration requestTimeout = Duration.ofSeconds(10);
+    private Retry retry = new Retry();
+    private Cache cache = new Cache();
+
+    @Data
+    public static class Retry {
+        private int maxRetries = 2;
+        private Duration initialBackoff = Duration.ofMillis(500);
+        private Duration maxBackoff = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Cache {
+        private boolean enabled = true;
+        private long maxWeightBytes = 32 * 1024 * 1024;
+        private Duration defaultTtl = Duration.ofHours(6);
+        private Map<String, Duration> topicTtl = new HashMap<>();
+
+        public Duration getTtl(String topic) {
+            Duration ttl = topic == null ? null : topicTtl.get(topic);
+            return ttl != null ? ttl : defaultTtl;
+        }
+    }
 }
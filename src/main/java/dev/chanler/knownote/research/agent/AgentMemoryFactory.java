@@ -0,0 +1,54 @@
+package dev.chanler.knownote.research.agent;
+
+import dev.chanler.knownote.config.ResearchProperties;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * 各阶段 Agent 的对话记忆，按 research.memory 中的阶段预算创建
+ */
+@Component
+@RequiredArgsConstructor
+public class AgentMemoryFactory {
+
+    private final ResearchProperties researchProperties;
+    private final TokenCountEstimator tokenCountEstimator;
+
+    public ChatMemory scope() {
+        return create(researchProperties.getMemory().getScopeMaxTokens());
+    }
+
+    public ChatMemory supervisor() {
+        return create(researchProperties.getMemory().getSupervisorMaxTokens());
+    }
+
+    /**
+     * 增量整理时最终汇总只用滚动摘要，不保留原文
+     */
+    public ChatMemory researcher() {
+        ResearchProperties.Memory memory = researchProperties.getMemory();
+        int verbatimMaxTokens = researchProperties.getResearcher().isIncrementalCompression()
+                ? 0 : memory.getResearcherVerbatimMaxTokens();
+        return create(memory.getResearcherMaxTokens(), verbatimMaxTokens);
+    }
+
+    public ChatMemory search() {
+        return create(researchProperties.getMemory().getSearchMaxTokens());
+    }
+
+    public ChatMemory report() {
+        return create(researchProperties.getMemory().getReportMaxTokens());
+    }
+
+    private TokenBudgetChatMemory create(int maxTokens) {
+        return create(maxTokens, 0);
+    }
+
+    private TokenBudgetChatMemory create(int maxTokens, int verbatimMaxTokens) {
+        ResearchProperties.Memory memory = researchProperties.getMemory();
+        return new TokenBudgetChatMemory(maxTokens, memory.getKeepRecentMessages(), memory.getDigestChars(),
+                verbatimMaxTokens, tokenCountEstimator);
+    }
+}
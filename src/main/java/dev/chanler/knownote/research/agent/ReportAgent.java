@@ -3,20 +3,31 @@ package dev.chanler.knownote.research.agent;
 import cn.hutool.core.date.DateUtil;
 import cn.hutool.core.util.StrUtil;
 import dev.chanler.knownote.common.util.EventPublisher;
+import dev.chanler.knownote.config.ResearchProperties;
 import dev.chanler.knownote.research.data.EventType;
 import dev.chanler.knownote.research.data.WorkflowStatus;
+import dev.chanler.knownote.research.exception.WorkflowException;
 import dev.chanler.knownote.research.model.ModelHandler;
 import dev.chanler.knownote.research.state.DeepResearchState;
 import dev.langchain4j.data.message.UserMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 import dev.langchain4j.model.chat.request.ChatRequest;
 import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.chat.response.StreamingHandle;
 import dev.langchain4j.model.output.TokenUsage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static dev.chanler.knownote.research.prompt.ReportPrompts.REPORT_AGENT_PROMPT;
 
@@ -28,14 +39,16 @@ import static dev.chanler.knownote.research.prompt.ReportPrompts.REPORT_AGENT_PR
 @Slf4j
 public class ReportAgent {
     private final ModelHandler modelHandler;
+    private final AgentMemoryFactory agentMemoryFactory;
     private final EventPublisher eventPublisher;
+    private final ResearchProperties researchProperties;
 
     public String run(DeepResearchState state) {
         state.setStatus(WorkflowStatus.IN_REPORT);
         eventPublisher.publishEvent(state.getResearchId(),
                 EventType.REPORT, "正在生成研究报告...", null);
         AgentAbility agent = AgentAbility.builder()
-                .memory(MessageWindowChatMemory.withMaxMessages(100))
+                .memory(agentMemoryFactory.report())
                 .chatModel(modelHandler.getModel(state.getResearchId()))
                 .streamingChatModel(modelHandler.getStreamModel(state.getResearchId()))
                 .build();
@@ -54,14 +67,130 @@ public class ReportAgent {
         ChatRequest chatRequest = ChatRequest.builder()
                 .messages(agent.getMemory().messages())
                 .build();
-        ChatResponse chatResponse = agent.getChatModel().chat(chatRequest);
+        ChatResponse chatResponse = researchProperties.getReport().isStreaming() && agent.getStreamingChatModel() != null
+                ? streamReport(agent, state, chatRequest)
+                : agent.getChatModel().chat(chatRequest);
         TokenUsage tokenUsage = chatResponse.tokenUsage();
-        state.setTotalInputTokens(state.getTotalInputTokens() + tokenUsage.inputTokenCount());
-        state.setTotalOutputTokens(state.getTotalOutputTokens() + tokenUsage.outputTokenCount());
+        if (tokenUsage != null) {
+            state.setTotalInputTokens(state.getTotalInputTokens() + tokenUsage.inputTokenCount());
+            state.setTotalOutputTokens(state.getTotalOutputTokens() + tokenUsage.outputTokenCount());
+        }
         agent.getMemory().add(chatResponse.aiMessage());
         state.setReport(chatResponse.aiMessage().text());
         eventPublisher.publishEvent(state.getResearchId(), EventType.REPORT,
                 "研究报告已完成", null);
         eventPublisher.publishMessage(state.getResearchId(), "assistant", chatResponse.aiMessage().text());
+        eventPublisher.endReportStream(state.getResearchId());
+    }
+
+    /**
+     * 流式生成报告，片段按时间/长度合并后推送，阻塞至生成完成
+     */
+    private ChatResponse streamReport(AgentAbility agent, DeepResearchState state, ChatRequest chatRequest) {
+        ResearchProperties.Report config = researchProperties.getReport();
+        ReportStreamBuffer buffer = new ReportStreamBuffer(state.getResearchId(),
+                config.getChunkMaxChars(), config.getChunkIntervalMs());
+        CompletableFuture<ChatResponse> future = new CompletableFuture<>();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        AtomicReference<StreamingHandle> streamingHandle = new AtomicReference<>();
+        agent.getStreamingChatModel().chat(chatRequest, new StreamingChatResponseHandler() {
+            @Override
+            public void onPartialResponse(String partialResponse) {
+                buffer.append(partialResponse);
+            }
+
+            @Override
+            public void onPartialResponse(PartialResponse partialResponse, PartialResponseContext context) {
+                // 先登记句柄再检查取消，与 cancel 的先置位再取句柄配对，保证至少一方取消流
+                StreamingHandle handle = context.streamingHandle();
+                streamingHandle.set(handle);
+                if (cancelled.get()) {
+                    handle.cancel();
+                    return;
+                }
+                buffer.append(partialResponse.text());
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                buffer.flush();
+                future.complete(completeResponse);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                future.completeExceptionally(error);
+            }
+        });
+        try {
+            return future.get(config.getStreamTimeoutSeconds(), TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            cancel(cancelled, streamingHandle, buffer);
+            Thread.currentThread().interrupt();
+            throw new WorkflowException("Interrupted while streaming report", e);
+        } catch (ExecutionException e) {
+            throw new WorkflowException("Report streaming failed", e.getCause());
+        } catch (TimeoutException e) {
+            cancel(cancelled, streamingHandle, buffer);
+            throw new WorkflowException("Report streaming timed out", e);
+        }
+    }
+
+    /**
+     * 取消、超时或下线时终止模型流并停止推送；首个片段到达前无句柄，由片段回调发现取消后终止
+     */
+    private void cancel(AtomicBoolean cancelled, AtomicReference<StreamingHandle> streamingHandle,
+                        ReportStreamBuffer buffer) {
+        cancelled.set(true);
+        buffer.close();
+        StreamingHandle handle = streamingHandle.get();
+        if (handle != null) {
+            handle.cancel();
+        }
+    }
+
+    /**
+     * 报告流片段合并缓冲，避免每个 token 一帧
+     */
+    private class ReportStreamBuffer {
+        private final String researchId;
+        private final int maxChars;
+        private final long intervalNanos;
+        private final StringBuilder pending = new StringBuilder();
+        private long lastFlushNanos = System.nanoTime();
+        private boolean closed;
+
+        ReportStreamBuffer(String researchId, int maxChars, long intervalMs) {
+            this.researchId = researchId;
+            this.maxChars = maxChars;
+            this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+        }
+
+        synchronized void append(String partial) {
+            if (closed || StrUtil.isEmpty(partial)) {
+                return;
+            }
+            pending.append(partial);
+            if (pending.length() >= maxChars || System.nanoTime() - lastFlushNanos >= intervalNanos) {
+                flush();
+            }
+        }
+
+        synchronized void flush() {
+            lastFlushNanos = System.nanoTime();
+            if (closed || pending.isEmpty()) {
+                return;
+            }
+            eventPublisher.publishReportStream(researchId, pending.toString());
+            pending.setLength(0);
+        }
+
+        /**
+         * 丢弃未推送的片段，之后的片段不再推送
+         */
+        synchronized void close() {
+            closed = true;
+            pending.setLength(0);
+        }
     }
 }
@@ -3,7 +3,9 @@ package dev.chanler.knownote.research.agent;
 import cn.hutool.core.date.DateUtil;
 import cn.hutool.core.util.StrUtil;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.chanler.knownote.common.async.ResearchRunRegistry;
 import dev.chanler.knownote.common.util.EventPublisher;
+import dev.chanler.knownote.config.ResearchProperties;
 import dev.chanler.knownote.research.data.EventType;
 import dev.chanler.knownote.research.exception.WorkflowException;
 import dev.chanler.knownote.research.model.ModelHandler;
@@ -12,11 +14,12 @@ import dev.chanler.knownote.research.tool.ToolRegistry;
 import dev.chanler.knownote.research.tool.annotation.ResearcherTool;
 import dev.langchain4j.agent.tool.ToolExecutionRequest;
 import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.data.message.SystemMessage;
 import dev.langchain4j.data.message.ToolExecutionResultMessage;
 import dev.langchain4j.data.message.UserMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
 import dev.langchain4j.model.chat.request.ChatRequest;
 import dev.langchain4j.model.chat.request.ToolChoice;
 import dev.langchain4j.model.chat.response.ChatResponse;
@@ -29,6 +32,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static dev.chanler.knownote.research.prompt.ResearcherPrompts.*;
@@ -41,10 +45,14 @@ import static dev.chanler.knownote.research.prompt.ResearcherPrompts.*;
 @Slf4j
 public class ResearcherAgent {
     private final ModelHandler modelHandler;
+    private final AgentMemoryFactory agentMemoryFactory;
     private final ToolRegistry toolRegistry;
     private final ObjectMapper objectMapper;
     private final SearchAgent searchAgent;
     private final EventPublisher eventPublisher;
+    private final ResearchRunRegistry researchRunRegistry;
+    private final ResearchProperties researchProperties;
+    private final TokenCountEstimator tokenCountEstimator;
 
     private static final String RESEARCHER_STAGE = ResearcherTool.class.getSimpleName();
 
@@ -55,7 +63,7 @@ public class ResearcherAgent {
         state.setCurrentResearchEventId(researchEventId);
 
         AgentAbility agent = AgentAbility.builder()
-                .memory(MessageWindowChatMemory.withMaxMessages(100))
+                .memory(agentMemoryFactory.researcher())
                 .chatModel(modelHandler.getModel(state.getResearchId()))
                 .streamingChatModel(modelHandler.getStreamModel(state.getResearchId()))
                 .build();
@@ -66,15 +74,26 @@ public class ResearcherAgent {
         agent.getMemory().add(systemMessage);
         agent.getMemory().add(UserMessage.from(state.getResearchTopic()));
 
-        plan(agent, state);
-        return compressResearch(agent, state);
+        // 增量模式下搜索结果到达即并入滚动摘要，最终汇总只需定稿摘要
+        RollingResearchDigest digest = researchProperties.getResearcher().isIncrementalCompression()
+                ? new RollingResearchDigest(state.getResearchId(), state.getResearchTopic(), agent.getChatModel())
+                : null;
+        try {
+            plan(agent, state, digest);
+            return digest != null ? compressDigest(agent, state, digest) : compressResearch(agent, state);
+        } finally {
+            if (digest != null) {
+                digest.close();
+            }
+        }
     }
 
-    private void plan(AgentAbility agent, DeepResearchState state) {
+    private void plan(AgentAbility agent, DeepResearchState state, RollingResearchDigest digest) {
         int maxSearchCount = state.getBudget().getMaxSearchCount();
         int maxIterations = maxSearchCount * 2;
         while (state.getSearchCount() < maxSearchCount
                 && state.getResearcherIterations() < maxIterations) {
+            researchRunRegistry.checkpoint(state.getResearchId());
             List<ToolSpecification> toolSpecifications = toolRegistry.getToolSpecifications(RESEARCHER_STAGE);
             ChatRequest chatRequest = ChatRequest.builder()
                     .messages(agent.getMemory().messages())
@@ -87,7 +106,7 @@ public class ResearcherAgent {
             state.setTotalOutputTokens(state.getTotalOutputTokens() + tokenUsage.outputTokenCount());
             agent.getMemory().add(chatResponse.aiMessage());
 
-            action(agent, chatResponse.aiMessage().toolExecutionRequests(), state);
+            action(agent, chatResponse.aiMessage().toolExecutionRequests(), state, digest);
 
             if (!chatResponse.aiMessage().hasToolExecutionRequests()) {
                 break;
@@ -97,7 +116,8 @@ public class ResearcherAgent {
         }
     }
 
-    private void action(AgentAbility agent, List<ToolExecutionRequest> toolExecutionRequests, DeepResearchState state) {
+    private void action(AgentAbility agent, List<ToolExecutionRequest> toolExecutionRequests, DeepResearchState state,
+                        RollingResearchDigest digest) {
         if (toolExecutionRequests == null || toolExecutionRequests.isEmpty()) {
             return;
         }
@@ -128,8 +148,13 @@ public class ResearcherAgent {
                     state.setSearchNotes(new ArrayList<>());
 
                     result = searchAgent.run(state);
+                    if (digest != null) {
+                        digest.fold(query, result);
+                    }
 
                     state.setSearchCount(state.getSearchCount() + 1);
+                } catch (WorkflowException e) {
+                    throw e;
                 } catch (Exception e) {
                     log.error("Failed to parse tavilySearch arguments", e);
                     throw new WorkflowException("Failed to parse tavilySearch arguments", e);
@@ -153,15 +178,98 @@ public class ResearcherAgent {
         }
     }
 
+    /**
+     * 定稿滚动摘要：等待在途整理完成，只把摘要与未并入的结果交给最终汇总
+     */
+    private String compressDigest(AgentAbility agent, DeepResearchState state, RollingResearchDigest digest) {
+        try {
+            digest.await(TimeUnit.SECONDS.toMillis(researchProperties.getResearcher().getFoldWaitSeconds()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WorkflowException("Interrupted while waiting for research digest", e);
+        }
+        state.setTotalInputTokens(state.getTotalInputTokens() + digest.inputTokens());
+        state.setTotalOutputTokens(state.getTotalOutputTokens() + digest.outputTokens());
+        if (digest.isEmpty()) {
+            return compressResearch(agent, state);
+        }
+        researchRunRegistry.checkpoint(state.getResearchId());
+
+        List<ChatMessage> messages = List.of(
+                SystemMessage.from(StrUtil.format(COMPRESS_RESEARCH_SYSTEM_PROMPT, Map.of("date", DateUtil.today()))),
+                UserMessage.from(StrUtil.format(COMPRESS_DIGEST_HUMAN_MESSAGE, Map.of(
+                        "research_topic", state.getResearchTopic(),
+                        "digest", digest.digest(),
+                        "unmerged", StrUtil.blankToDefault(digest.unmerged(), "无")))));
+        return finishCompression(agent, state, messages);
+    }
+
     private String compressResearch(AgentAbility agent, DeepResearchState state) {
         String systemPrompt = StrUtil.format(COMPRESS_RESEARCH_SYSTEM_PROMPT, Map.of("date", DateUtil.today()));
+        // 汇总使用未压缩的原文（受 researcher-verbatim-max-tokens 约束），压缩只作用于研究循环中的逐轮请求
+        List<ChatMessage> history = agent.getMemory() instanceof TokenBudgetChatMemory memory
+                ? memory.verbatimMessages() : agent.getMemory().messages();
+        history = history.stream().skip(2).collect(Collectors.toList());
+        List<List<ChatMessage>> chunks = chunk(history, researchProperties.getResearcher().getCompressChunkTokens());
+        if (chunks.size() <= 1) {
+            return finishCompression(agent, state, compressMessages(systemPrompt, history, state));
+        }
 
-        List<ChatMessage> messages = new ArrayList<>();
+        // 原文超出单次汇总的分块上限时逐块整理，再把各块结果定稿为一份
+        List<String> partials = new ArrayList<>(chunks.size());
+        for (List<ChatMessage> chunk : chunks) {
+            researchRunRegistry.checkpoint(state.getResearchId());
+            ChatResponse response = agent.getChatModel().chat(ChatRequest.builder()
+                    .messages(compressMessages(systemPrompt, chunk, state))
+                    .build());
+            TokenUsage tokenUsage = response.tokenUsage();
+            state.setTotalInputTokens(state.getTotalInputTokens() + tokenUsage.inputTokenCount());
+            state.setTotalOutputTokens(state.getTotalOutputTokens() + tokenUsage.outputTokenCount());
+            partials.add(response.aiMessage().text());
+        }
+        researchRunRegistry.checkpoint(state.getResearchId());
+        List<ChatMessage> messages = List.of(
+                SystemMessage.from(systemPrompt),
+                UserMessage.from(StrUtil.format(COMPRESS_DIGEST_HUMAN_MESSAGE, Map.of(
+                        "research_topic", state.getResearchTopic(),
+                        "digest", String.join("\n\n---\n\n", partials),
+                        "unmerged", "无"))));
+        return finishCompression(agent, state, messages);
+    }
+
+    private List<ChatMessage> compressMessages(String systemPrompt, List<ChatMessage> history, DeepResearchState state) {
+        List<ChatMessage> messages = new ArrayList<>(history.size() + 2);
         messages.add(SystemMessage.from(systemPrompt));
-        messages.addAll(agent.getMemory().messages().stream().skip(2).collect(Collectors.toList()));
+        messages.addAll(history);
         messages.add(UserMessage.from(
             StrUtil.format(COMPRESS_RESEARCH_HUMAN_MESSAGE, Map.of("research_topic", state.getResearchTopic()))));
+        return messages;
+    }
+
+    /**
+     * 按 token 上限切分对话，只在 AI 消息处断开以保持工具调用与结果的配对；单轮超出上限时独占一块
+     */
+    private List<List<ChatMessage>> chunk(List<ChatMessage> history, int maxTokens) {
+        List<List<ChatMessage>> chunks = new ArrayList<>();
+        List<ChatMessage> current = new ArrayList<>();
+        int currentTokens = 0;
+        for (ChatMessage message : history) {
+            int size = tokenCountEstimator.estimateTokenCountInMessage(message);
+            if (maxTokens > 0 && message instanceof AiMessage && !current.isEmpty() && currentTokens + size > maxTokens) {
+                chunks.add(current);
+                current = new ArrayList<>();
+                currentTokens = 0;
+            }
+            current.add(message);
+            currentTokens += size;
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current);
+        }
+        return chunks;
+    }
 
+    private String finishCompression(AgentAbility agent, DeepResearchState state, List<ChatMessage> messages) {
         ChatRequest compressRequest = ChatRequest.builder()
                 .messages(messages)
                 .build();
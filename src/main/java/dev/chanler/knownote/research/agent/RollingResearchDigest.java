@@ -0,0 +1,149 @@
+package dev.chanler.knownote.research.agent;
+
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.util.StrUtil;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.TokenUsage;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static dev.chanler.knownote.research.prompt.ResearcherPrompts.FOLD_RESEARCH_HUMAN_MESSAGE;
+import static dev.chanler.knownote.research.prompt.ResearcherPrompts.FOLD_RESEARCH_SYSTEM_PROMPT;
+
+/**
+ * 研究发现的滚动摘要：每个搜索结果到达后在单独的虚拟线程中按序并入摘要，不阻塞研究循环
+ * <p>
+ * 并入失败或等待超时的结果保留原文，由最终汇总一并处理
+ */
+@Slf4j
+class RollingResearchDigest implements AutoCloseable {
+
+    private final String researchId;
+    private final String researchTopic;
+    private final ChatModel chatModel;
+    private final ExecutorService executor;
+
+    private final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+    private final Queue<Pending> unfolded = new ConcurrentLinkedQueue<>();
+    private final AtomicLong inputTokens = new AtomicLong();
+    private final AtomicLong outputTokens = new AtomicLong();
+    // 只由整理线程写入
+    private volatile String digest = "";
+
+    RollingResearchDigest(String researchId, String researchTopic, ChatModel chatModel) {
+        this.researchId = researchId;
+        this.researchTopic = researchTopic;
+        this.chatModel = chatModel;
+        this.executor = Executors.newSingleThreadExecutor(
+                Thread.ofVirtual().name("research-fold-" + researchId).factory());
+    }
+
+    void fold(String query, String result) {
+        Pending item = new Pending(query, result);
+        pending.add(item);
+        try {
+            executor.execute(() -> process(item));
+        } catch (RejectedExecutionException e) {
+            pending.remove(item);
+            unfolded.add(item);
+        }
+    }
+
+    /**
+     * 等待已提交的结果并入完成，超时后停止整理，未完成的结果转为原文
+     */
+    void await(long timeoutMillis) throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+            log.warn("研究摘要整理超时，剩余结果保留原文 researchId={}, pending={}", researchId, pending.size());
+            executor.shutdownNow();
+        }
+    }
+
+    boolean isEmpty() {
+        return StrUtil.isBlank(digest) && pending.isEmpty() && unfolded.isEmpty();
+    }
+
+    String digest() {
+        return digest;
+    }
+
+    /**
+     * 尚未并入摘要的搜索结果原文
+     */
+    String unmerged() {
+        // 超时中断时同一结果可能短暂同时位于两个队列
+        Set<Pending> items = new LinkedHashSet<>(unfolded);
+        items.addAll(pending);
+        StringBuilder sb = new StringBuilder();
+        for (Pending item : items) {
+            sb.append("搜索词：").append(item.query()).append("\n\n").append(item.result()).append("\n\n");
+        }
+        return sb.toString().trim();
+    }
+
+    long inputTokens() {
+        return inputTokens.get();
+    }
+
+    long outputTokens() {
+        return outputTokens.get();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void process(Pending item) {
+        if (Thread.currentThread().isInterrupted()) {
+            return;
+        }
+        try {
+            ChatRequest request = ChatRequest.builder()
+                    .messages(SystemMessage.from(StrUtil.format(FOLD_RESEARCH_SYSTEM_PROMPT, Map.of("date", DateUtil.today()))),
+                            UserMessage.from(StrUtil.format(FOLD_RESEARCH_HUMAN_MESSAGE, Map.of(
+                                    "research_topic", researchTopic,
+                                    "digest", digest,
+                                    "query", item.query(),
+                                    "result", item.result()))))
+                    .build();
+            ChatResponse response = chatModel.chat(request);
+            TokenUsage tokenUsage = response.tokenUsage();
+            if (tokenUsage != null) {
+                inputTokens.addAndGet(tokenUsage.inputTokenCount());
+                outputTokens.addAndGet(tokenUsage.outputTokenCount());
+            }
+            String text = response.aiMessage().text();
+            if (StrUtil.isBlank(text)) {
+                unfolded.add(item);
+            } else {
+                digest = text;
+            }
+        } catch (Exception e) {
+            if (!Thread.currentThread().isInterrupted()) {
+                log.warn("研究摘要整理失败，保留原文 researchId={}, query={}", researchId, item.query(), e);
+            }
+            unfolded.add(item);
+        } finally {
+            pending.remove(item);
+        }
+    }
+
+    private record Pending(String query, String result) {
+    }
+}
@@ -13,7 +13,6 @@ import dev.chanler.knownote.research.schema.ScopeSchema;
 import dev.chanler.knownote.research.state.DeepResearchState;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.UserMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 import dev.langchain4j.model.chat.request.ChatRequest;
 import dev.langchain4j.model.chat.request.ResponseFormat;
 import dev.langchain4j.model.chat.request.ResponseFormatType;
@@ -38,6 +37,7 @@ import static dev.chanler.knownote.research.prompt.ScopePrompts.TRANSFORM_MESSAG
 @Slf4j
 public class ScopeAgent {
     private final ModelHandler modelHandler;
+    private final AgentMemoryFactory agentMemoryFactory;
     private final ObjectMapper objectMapper;
     private final EventPublisher eventPublisher;
 
@@ -48,7 +48,7 @@ public class ScopeAgent {
                 EventType.SCOPE, "正在分析您的研究需求...", userInput.singleText());
         state.setCurrentScopeEventId(scopeEventId);
         AgentAbility agent = AgentAbility.builder()
-                .memory(MessageWindowChatMemory.withMaxMessages(100))
+                .memory(agentMemoryFactory.scope())
                 .chatModel(modelHandler.getModel(state.getResearchId()))
                 .streamingChatModel(modelHandler.getStreamModel(state.getResearchId()))
                 .build();
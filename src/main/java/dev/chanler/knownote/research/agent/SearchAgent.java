@@ -3,14 +3,18 @@ package dev.chanler.knownote.research.agent;
 import cn.hutool.core.date.DateUtil;
 import cn.hutool.core.util.StrUtil;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.chanler.knownote.common.async.ResearchRunRegistry;
 import dev.chanler.knownote.common.util.EventPublisher;
+import dev.chanler.knownote.config.ResearchProperties;
+import dev.chanler.knownote.research.cache.SummaryCache;
 import dev.chanler.knownote.research.client.TavilyClient;
 import dev.chanler.knownote.research.data.EventType;
 import dev.chanler.knownote.research.model.ModelHandler;
+import dev.chanler.knownote.research.model.ModelThrottle;
 import dev.chanler.knownote.research.schema.SummarySchema;
 import dev.chanler.knownote.research.state.DeepResearchState;
 import dev.langchain4j.data.message.UserMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
 import dev.langchain4j.model.chat.request.ChatRequest;
 import dev.langchain4j.model.chat.request.ResponseFormat;
 import dev.langchain4j.model.chat.request.ResponseFormatType;
@@ -18,12 +22,24 @@ import dev.langchain4j.model.chat.request.json.JsonSchema;
 import dev.langchain4j.model.chat.response.ChatResponse;
 import dev.langchain4j.model.output.TokenUsage;
 import dev.langchain4j.service.output.JsonSchemas;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static dev.chanler.knownote.research.prompt.SearchPrompts.SUMMARIZE_WEBPAGE_PROMPT;
 
@@ -35,9 +51,23 @@ import static dev.chanler.knownote.research.prompt.SearchPrompts.SUMMARIZE_WEBPA
 @Slf4j
 public class SearchAgent {
     private final ModelHandler modelHandler;
+    private final AgentMemoryFactory agentMemoryFactory;
     private final TavilyClient tavilyClient;
     private final ObjectMapper objectMapper;
     private final EventPublisher eventPublisher;
+    private final ResearchProperties researchProperties;
+    private final SummaryCache summaryCache;
+    private final ResearchRunRegistry researchRunRegistry;
+    private final TokenCountEstimator tokenCountEstimator;
+
+    // modelId -> 摘要并发许可
+    private final Map<String, Semaphore> summarizePermits = new ConcurrentHashMap<>();
+    private final ExecutorService summarizeExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @PreDestroy
+    public void destroy() {
+        summarizeExecutor.shutdownNow();
+    }
 
     public String run(DeepResearchState state) {
         Long searchEventId = eventPublisher.publishEvent(state.getResearchId(), EventType.SEARCH,
@@ -45,7 +75,7 @@ public class SearchAgent {
         state.setCurrentSearchEventId(searchEventId);
 
         AgentAbility agent = AgentAbility.builder()
-                .memory(MessageWindowChatMemory.withMaxMessages(100))
+                .memory(agentMemoryFactory.search())
                 .chatModel(modelHandler.getModel(state.getResearchId()))
                 .streamingChatModel(modelHandler.getStreamModel(state.getResearchId()))
                 .build();
@@ -68,7 +98,7 @@ public class SearchAgent {
             return;
         }
 
-        Map<String, TavilyClient.SearchResult> uniqueResults = new HashMap<>();
+        Map<String, TavilyClient.SearchResult> uniqueResults = new LinkedHashMap<>();
         for (TavilyClient.SearchResult result : response.results()) {
             if (result.url() != null && !uniqueResults.containsKey(result.url())) {
                 uniqueResults.put(result.url(), result);
@@ -81,19 +111,50 @@ public class SearchAgent {
     }
 
     private void action(AgentAbility agent, DeepResearchState state) {
+        researchRunRegistry.checkpoint(state.getResearchId());
         if (state.getSearchResults().isEmpty()) {
             log.warn("No search results to process");
             return;
         }
 
-        for (TavilyClient.SearchResult result : state.getSearchResults().values()) {
+        // 并发摘要，按搜索结果原顺序回填，保证 SOURCE 1..N 的编号稳定
+        Semaphore permits = summarizePermits.computeIfAbsent(StrUtil.blankToDefault(state.getModelId(), "default"),
+                key -> new Semaphore(Math.max(1, researchProperties.getModel().getMaxConcurrentSummaries())));
+        List<TavilyClient.SearchResult> results = new ArrayList<>(state.getSearchResults().values());
+        List<String> contents = new ArrayList<>(results.size());
+        List<Future<SummaryResult>> summaries = new ArrayList<>(results.size());
+        for (TavilyClient.SearchResult result : results) {
             String content = result.rawContent() != null && !result.rawContent().isEmpty()
                 ? result.rawContent()
                 : result.content();
+            contents.add(content);
+            summaries.add(content != null && content.length() > 500
+                ? summarizeExecutor.submit(() -> summarizeWebpage(agent, state.getModelId(), content, permits))
+                : null);
+        }
 
-            if (content != null && content.length() > 500) {
+        // 每个摘要自取得许可起单独计时，等待许可不计入；整体由研究截止时间与取消约束
+        try {
+            for (int i = 0; i < results.size(); i++) {
+                researchRunRegistry.checkpoint(state.getResearchId());
+                TavilyClient.SearchResult result = results.get(i);
+                Future<SummaryResult> future = summaries.get(i);
+                if (future == null) {
+                    state.getSearchNotes().add(StrUtil.format("[{title}]\nURL: {url}\n{content}",
+                        Map.of(
+                            "title", result.title(),
+                            "url", result.url(),
+                            "content", contents.get(i)
+                        )));
+                    continue;
+                }
                 try {
-                    SummarySchema summary = summarizeWebpage(agent, state, content);
+                    SummaryResult summaryResult = future.get();
+                    if (summaryResult.tokenUsage() != null) {
+                        state.setTotalInputTokens(state.getTotalInputTokens() + summaryResult.tokenUsage().inputTokenCount());
+                        state.setTotalOutputTokens(state.getTotalOutputTokens() + summaryResult.tokenUsage().outputTokenCount());
+                    }
+                    SummarySchema summary = summaryResult.summary();
                     String formatted = StrUtil.format(
                         "[{title}]\nURL: {url}\n<summary>{summary}</summary>\n<key_excerpts>{key_excerpts}</key_excerpts>",
                         Map.of(
@@ -105,6 +166,10 @@ public class SearchAgent {
                     );
                     state.getSearchNotes().add(formatted);
                 } catch (Exception e) {
+                    if (e instanceof InterruptedException) {
+                        Thread.currentThread().interrupt();
+                    }
+                    future.cancel(true);
                     log.warn("Failed to summarize {}", result.url());
                     state.getSearchNotes().add(StrUtil.format("[{title}]\nURL: {url}\n{content}",
                         Map.of(
@@ -113,49 +178,87 @@ public class SearchAgent {
                             "content", result.content()
                         )));
                 }
-            } else {
-                state.getSearchNotes().add(StrUtil.format("[{title}]\nURL: {url}\n{content}",
-                    Map.of(
-                        "title", result.title(),
-                        "url", result.url(),
-                        "content", content
-                    )));
             }
+        } finally {
+            // 取消或超时提前退出时，中止仍在进行的摘要调用
+            summaries.stream().filter(Objects::nonNull).forEach(future -> future.cancel(true));
         }
     }
 
-    private SummarySchema summarizeWebpage(AgentAbility agent, DeepResearchState state, String webpageContent) {
+    private SummaryResult summarizeWebpage(AgentAbility agent, String modelId, String webpageContent, Semaphore permits) {
+        String cacheKey = summaryCache.isEnabled() ? summaryCache.key(webpageContent, modelId) : null;
+        if (cacheKey != null) {
+            SummarySchema cached = summaryCache.get(cacheKey);
+            if (cached != null) {
+                return new SummaryResult(cached, null);
+            }
+        }
+        ChatResponse chatResponse = null;
+        int abandonedInputTokens = 0;
         try {
-            String prompt = StrUtil.format(SUMMARIZE_WEBPAGE_PROMPT, Map.of(
-                "webpage_content", webpageContent,
-                "date", DateUtil.today()
-            ));
-
-            JsonSchema jsonSchema = JsonSchemas.jsonSchemaFrom(SummarySchema.class)
-                .orElseThrow(() -> new IllegalStateException("Failed to generate JSON schema"));
+            permits.acquire();
+            try {
+                String prompt = StrUtil.format(SUMMARIZE_WEBPAGE_PROMPT, Map.of(
+                    "webpage_content", webpageContent,
+                    "date", DateUtil.today()
+                ));
 
-            ResponseFormat responseFormat = ResponseFormat.builder()
-                .type(ResponseFormatType.JSON)
-                .jsonSchema(jsonSchema)
-                .build();
+                JsonSchema jsonSchema = JsonSchemas.jsonSchemaFrom(SummarySchema.class)
+                    .orElseThrow(() -> new IllegalStateException("Failed to generate JSON schema"));
 
-            ChatRequest chatRequest = ChatRequest.builder()
-                .messages(UserMessage.from(prompt))
-                .responseFormat(responseFormat)
-                .build();
+                ResponseFormat responseFormat = ResponseFormat.builder()
+                    .type(ResponseFormatType.JSON)
+                    .jsonSchema(jsonSchema)
+                    .build();
 
-            ChatResponse chatResponse = agent.getChatModel().chat(chatRequest);
-            TokenUsage tokenUsage = chatResponse.tokenUsage();
-            state.setTotalInputTokens(state.getTotalInputTokens() + tokenUsage.inputTokenCount());
-            state.setTotalOutputTokens(state.getTotalOutputTokens() + tokenUsage.outputTokenCount());
-            return objectMapper.readValue(chatResponse.aiMessage().text(), SummarySchema.class);
+                ChatRequest chatRequest = ChatRequest.builder()
+                    .messages(UserMessage.from(prompt))
+                    .responseFormat(responseFormat)
+                    .build();
 
+                // 模型调用在独立虚拟线程中执行；超时从通过速率与并发闸门起计，超时后中断以中止 HTTP 请求并归还许可
+                CompletableFuture<Void> admitted = new CompletableFuture<>();
+                Future<ChatResponse> call = summarizeExecutor.submit(() -> {
+                    try {
+                        return ModelThrottle.withAdmissionListener(() -> admitted.complete(null),
+                                () -> agent.getChatModel().chat(chatRequest));
+                    } finally {
+                        admitted.complete(null);
+                    }
+                });
+                try {
+                    admitted.get();
+                    chatResponse = call.get(researchProperties.getSearch().getSummarizeTimeoutSeconds(), TimeUnit.SECONDS);
+                } catch (TimeoutException e) {
+                    // 已发出的请求按输入估算计入用量，输出未知
+                    abandonedInputTokens = tokenCountEstimator.estimateTokenCountInMessages(chatRequest.messages());
+                    throw e;
+                } finally {
+                    call.cancel(true);
+                }
+                SummarySchema summary = objectMapper.readValue(chatResponse.aiMessage().text(), SummarySchema.class);
+                if (cacheKey != null) {
+                    TokenUsage tokenUsage = chatResponse.tokenUsage();
+                    summaryCache.put(cacheKey, summary,
+                            tokenUsage != null && tokenUsage.inputTokenCount() != null ? tokenUsage.inputTokenCount() : 0,
+                            tokenUsage != null && tokenUsage.outputTokenCount() != null ? tokenUsage.outputTokenCount() : 0);
+                }
+                return new SummaryResult(summary, chatResponse.tokenUsage());
+            } finally {
+                permits.release();
+            }
         } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
             log.error("Webpage summarization failed", e);
             SummarySchema fallback = new SummarySchema();
             fallback.setSummary(webpageContent.substring(0, Math.min(1000, webpageContent.length())));
             fallback.setKeyExcerpts("");
-            return fallback;
+            // 模型已返回但解析失败时计入实际用量，超时放弃时计入估算的输入
+            TokenUsage spent = chatResponse != null ? chatResponse.tokenUsage()
+                    : abandonedInputTokens > 0 ? new TokenUsage(abandonedInputTokens, 0) : null;
+            return new SummaryResult(fallback, spent);
         }
     }
 
@@ -180,4 +283,7 @@ public class SearchAgent {
 
         return output.toString();
     }
+
+    private record SummaryResult(SummarySchema summary, TokenUsage tokenUsage) {
+    }
 }
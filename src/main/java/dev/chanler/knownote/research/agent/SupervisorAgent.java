@@ -3,7 +3,10 @@ package dev.chanler.knownote.research.agent;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import cn.hutool.core.date.DateUtil;
 import cn.hutool.core.util.StrUtil;
+import dev.chanler.knownote.common.async.ResearchRunRegistry;
+import dev.chanler.knownote.common.async.ResearchUnitExecutor;
 import dev.chanler.knownote.common.util.EventPublisher;
+import dev.chanler.knownote.common.util.ResearchCheckpointStore;
 import dev.chanler.knownote.research.data.EventType;
 import dev.chanler.knownote.research.data.WorkflowStatus;
 import dev.chanler.knownote.research.exception.WorkflowException;
@@ -16,7 +19,6 @@ import dev.langchain4j.agent.tool.ToolSpecification;
 import dev.langchain4j.data.message.SystemMessage;
 import dev.langchain4j.data.message.ToolExecutionResultMessage;
 import dev.langchain4j.data.message.UserMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 import dev.langchain4j.model.chat.request.ChatRequest;
 import dev.langchain4j.model.chat.request.ToolChoice;
 import dev.langchain4j.model.chat.response.ChatResponse;
@@ -25,9 +27,12 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 import static dev.chanler.knownote.research.prompt.SupervisorPrompts.LEAD_RESEARCHER_PROMPT;
 
@@ -39,12 +44,17 @@ import static dev.chanler.knownote.research.prompt.SupervisorPrompts.LEAD_RESEAR
 @Slf4j
 public class SupervisorAgent {
     private final ModelHandler modelHandler;
+    private final AgentMemoryFactory agentMemoryFactory;
     private final ObjectMapper objectMapper;
     private final ToolRegistry toolRegistry;
     private final ResearcherAgent researcherAgent;
     private final EventPublisher eventPublisher;
+    private final ResearchUnitExecutor researchUnitExecutor;
+    private final ResearchRunRegistry researchRunRegistry;
+    private final ResearchCheckpointStore checkpointStore;
 
     private static final String SUPERVISOR_STAGE = SupervisorTool.class.getSimpleName();
+    private static final String RESUME_NOTICE = "研究在中断后恢复。以下研究任务已完成，请勿重复研究这些主题，在剩余配额内继续规划或调用 researchComplete 结束：";
     private static final String TOOL_REMINDER = "上一轮未实际调用任何工具。请用 thinkTool 先做规划，再以工具调用形式触发 conductResearch，想要结束时使用 researchComplete 结束。";
 
     public void run(DeepResearchState state) {
@@ -53,7 +63,7 @@ public class SupervisorAgent {
                 EventType.SUPERVISOR, "开始规划研究路线...", state.getResearchBrief());
         state.setCurrentSupervisorEventId(supervisorEventId);
         AgentAbility agent = AgentAbility.builder()
-                .memory(MessageWindowChatMemory.withMaxMessages(100))
+                .memory(agentMemoryFactory.supervisor())
                 .chatModel(modelHandler.getModel(state.getResearchId()))
                 .streamingChatModel(modelHandler.getStreamModel(state.getResearchId()))
                 .build();
@@ -65,6 +75,12 @@ public class SupervisorAgent {
                 )));
         agent.getMemory().add(systemMessage);
         agent.getMemory().add(UserMessage.from(state.getResearchBrief()));
+        if (!state.getCompletedUnits().isEmpty()) {
+            StringBuilder notice = new StringBuilder(RESUME_NOTICE);
+            state.getCompletedUnits().forEach((topic, result) ->
+                    notice.append("\n\n<research_topic>").append(topic).append("</research_topic>\n").append(result));
+            agent.getMemory().add(UserMessage.from(notice.toString()));
+        }
         plan(agent, state);
     }
 
@@ -73,6 +89,7 @@ public class SupervisorAgent {
         int maxIterations = maxConductCount * 2;
         while (state.getConductCount() < maxConductCount
                 && state.getSupervisorIterations() < maxIterations) {
+            researchRunRegistry.checkpoint(state.getResearchId());
             List<ToolSpecification> toolSpecifications = toolRegistry.getToolSpecifications(SUPERVISOR_STAGE);
             ChatRequest chatRequest = ChatRequest.builder()
                     .toolSpecifications(toolSpecifications)
@@ -107,19 +124,19 @@ public class SupervisorAgent {
         if (toolExecutionRequests == null || toolExecutionRequests.isEmpty()) {
             return;
         }
-        for (ToolExecutionRequest toolExecutionRequest : toolExecutionRequests) {
-            String result;
-
-            if ("conductResearch".equals(toolExecutionRequest.name())) {
-                int maxConductCount = state.getBudget().getMaxConductCount();
-                if (state.getConductCount() >= maxConductCount) {
-                    log.warn("conductResearch count limit reached: {}/{}",
-                            state.getConductCount(), maxConductCount);
-                    result = "已达到研究任务配额限制，请调用 researchComplete 完成研究";
-                    agent.getMemory().add(ToolExecutionResultMessage.from(toolExecutionRequest, result));
+        int maxConductCount = state.getBudget().getMaxConductCount();
+        Semaphore unitPermits = new Semaphore(Math.max(1, state.getBudget().getMaxConcurrentUnits()));
+        Map<Integer, Future<DeepResearchState>> units = new HashMap<>();
+        // 检查点中已完成的主题直接复用结果，不再占用配额
+        Map<Integer, String> reused = new HashMap<>();
+        try {
+            // 先按调用顺序分配配额并启动研究单元，最多 maxConcurrentUnits 个同时执行
+            int reserved = state.getConductCount();
+            for (int i = 0; i < toolExecutionRequests.size(); i++) {
+                ToolExecutionRequest toolExecutionRequest = toolExecutionRequests.get(i);
+                if (!"conductResearch".equals(toolExecutionRequest.name())) {
                     continue;
                 }
-
                 String researchTopic;
                 try {
                     var argsNode = objectMapper.readTree(toolExecutionRequest.arguments());
@@ -128,37 +145,95 @@ public class SupervisorAgent {
                     log.error("Failed to parse conductResearch arguments", e);
                     throw new WorkflowException("Failed to parse conductResearch arguments", e);
                 }
+                String completed = state.getCompletedUnits().get(researchTopic);
+                if (completed != null) {
+                    log.info("Reusing checkpointed research unit: researchId={}, topic={}", state.getResearchId(), researchTopic);
+                    reused.put(i, completed);
+                    continue;
+                }
+                if (reserved >= maxConductCount) {
+                    continue;
+                }
 
                 Long planEventId = eventPublisher.publishEvent(state.getResearchId(), EventType.SUPERVISOR,
                         "正在研究: " + researchTopic, null, state.getCurrentSupervisorEventId());
-                state.setCurrentResearchEventId(planEventId);
+                DeepResearchState unitState = state.forkResearchUnit(researchTopic, planEventId);
+
+                unitPermits.acquire();
+                units.put(i, researchUnitExecutor.submit(() -> {
+                    try {
+                        researcherAgent.run(unitState);
+                        return unitState;
+                    } finally {
+                        unitPermits.release();
+                    }
+                }));
+                reserved++;
+            }
 
-                state.setResearchTopic(researchTopic);
-                state.setResearcherIterations(0);
-                state.setSearchCount(0);
-                state.setResearcherNotes(new ArrayList<>());
+            // 再按调用顺序回填结果
+            for (int i = 0; i < toolExecutionRequests.size(); i++) {
+                ToolExecutionRequest toolExecutionRequest = toolExecutionRequests.get(i);
+                String result;
+                boolean unitFinished = false;
+
+                if ("conductResearch".equals(toolExecutionRequest.name()) && reused.containsKey(i)) {
+                    result = reused.get(i);
+                } else if ("conductResearch".equals(toolExecutionRequest.name())) {
+                    Future<DeepResearchState> unit = units.get(i);
+                    if (unit == null) {
+                        log.warn("conductResearch count limit reached: {}/{}",
+                                state.getConductCount(), maxConductCount);
+                        result = "已达到研究任务配额限制，请调用 researchComplete 完成研究";
+                        agent.getMemory().add(ToolExecutionResultMessage.from(toolExecutionRequest, result));
+                        continue;
+                    }
+                    DeepResearchState unitState = awaitUnit(unit);
+                    state.mergeTokenUsage(unitState);
+                    result = unitState.getCompressedResearch();
+
+                    state.setConductCount(state.getConductCount() + 1);
+                    state.getCompletedUnits().put(unitState.getResearchTopic(), result);
+                    unitFinished = true;
+                } else {
+                    var executor = toolRegistry.getExecutor(toolExecutionRequest.name());
+                    if (executor == null) {
+                        log.warn("No executor found for tool {} in stage {}", toolExecutionRequest.name(), SUPERVISOR_STAGE);
+                        continue;
+                    }
+                    result = executor.execute(toolExecutionRequest, null);
+                }
 
-                result = researcherAgent.run(state);
+                if (toolExecutionRequest.name().equals("thinkTool")) {
+                    eventPublisher.publishEvent(state.getResearchId(), EventType.SUPERVISOR,
+                            "思考中...", result, state.getCurrentSupervisorEventId());
+                    state.getSupervisorNotes().add(result);
+                } else if (toolExecutionRequest.name().equals("conductResearch") && !reused.containsKey(i)) {
+                    state.getSupervisorNotes().add(result);
+                }
 
-                state.setConductCount(state.getConductCount() + 1);
-            } else {
-                var executor = toolRegistry.getExecutor(toolExecutionRequest.name());
-                if (executor == null) {
-                    log.warn("No executor found for tool {} in stage {}", toolExecutionRequest.name(), SUPERVISOR_STAGE);
-                    continue;
+                agent.getMemory().add(ToolExecutionResultMessage.from(toolExecutionRequest, result));
+                if (unitFinished) {
+                    checkpointStore.save(state.getResearchId(), state.toCheckpoint(WorkflowStatus.IN_SCOPE));
                 }
-                result = executor.execute(toolExecutionRequest, null);
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WorkflowException("Interrupted while waiting for research units", e);
+        } finally {
+            units.values().forEach(unit -> unit.cancel(true));
+        }
+    }
 
-            if (toolExecutionRequest.name().equals("thinkTool")) {
-                eventPublisher.publishEvent(state.getResearchId(), EventType.SUPERVISOR,
-                        "思考中...", result, state.getCurrentSupervisorEventId());
-                state.getSupervisorNotes().add(result);
-            } else if (toolExecutionRequest.name().equals("conductResearch")) {
-                state.getSupervisorNotes().add(result);
+    private DeepResearchState awaitUnit(Future<DeepResearchState> unit) throws InterruptedException {
+        try {
+            return unit.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof WorkflowException workflowException) {
+                throw workflowException;
             }
-
-            agent.getMemory().add(ToolExecutionResultMessage.from(toolExecutionRequest, result));
+            throw new WorkflowException("Research unit failed", cause);
         }
     }
 }
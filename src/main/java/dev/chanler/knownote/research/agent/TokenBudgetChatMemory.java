@@ -0,0 +1,168 @@
+package dev.chanler.knownote.research.agent;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按 token 预算约束的对话记忆
+ * <p>
+ * 系统提示与最近若干条消息保持原文；超出预算时先从最早的工具结果开始压缩为摘要，
+ * 仍超出时按轮次移除最早的 AI 消息及其工具结果，工具调用与结果的配对保持完整。
+ * verbatimMaxTokens 大于 0 时另行保留原文供最终汇总使用，原文超出该预算时同样按轮次移除最早的部分
+ */
+class TokenBudgetChatMemory implements ChatMemory {
+
+    private static final String DIGEST_SUFFIX = "\n…（较早的工具结果已压缩，原文约 %d tokens）";
+
+    private final int maxTokens;
+    private final int keepRecentMessages;
+    private final int digestChars;
+    private final int verbatimMaxTokens;
+    private final TokenCountEstimator estimator;
+
+    private final List<ChatMessage> messages = new ArrayList<>();
+    private final List<Integer> tokens = new ArrayList<>();
+    private final List<Boolean> compacted = new ArrayList<>();
+    private int totalTokens;
+    private final List<ChatMessage> verbatim = new ArrayList<>();
+    private final List<Integer> verbatimTokens = new ArrayList<>();
+    private int verbatimTotalTokens;
+
+    TokenBudgetChatMemory(int maxTokens, int keepRecentMessages, int digestChars, int verbatimMaxTokens,
+                          TokenCountEstimator estimator) {
+        this.maxTokens = maxTokens;
+        this.keepRecentMessages = keepRecentMessages;
+        this.digestChars = digestChars;
+        this.verbatimMaxTokens = verbatimMaxTokens;
+        this.estimator = estimator;
+    }
+
+    @Override
+    public Object id() {
+        return "default";
+    }
+
+    @Override
+    public synchronized void add(ChatMessage message) {
+        if (message instanceof SystemMessage && !messages.isEmpty() && messages.get(0) instanceof SystemMessage) {
+            // 与 MessageWindowChatMemory 一致：系统提示唯一且置于首位
+            totalTokens -= tokens.get(0);
+            int size = estimator.estimateTokenCountInMessage(message);
+            messages.set(0, message);
+            tokens.set(0, size);
+            totalTokens += size;
+            if (verbatimMaxTokens > 0) {
+                verbatimTotalTokens += size - verbatimTokens.get(0);
+                verbatim.set(0, message);
+                verbatimTokens.set(0, size);
+            }
+        } else {
+            int size = estimator.estimateTokenCountInMessage(message);
+            int index = message instanceof SystemMessage ? 0 : messages.size();
+            messages.add(index, message);
+            tokens.add(index, size);
+            compacted.add(index, false);
+            totalTokens += size;
+            if (verbatimMaxTokens > 0) {
+                int at = message instanceof SystemMessage ? 0 : verbatim.size();
+                verbatim.add(at, message);
+                verbatimTokens.add(at, size);
+                verbatimTotalTokens += size;
+            }
+        }
+        compact();
+        if (verbatimMaxTokens > 0) {
+            verbatimTotalTokens = evict(verbatim, verbatimTokens, null, verbatimTotalTokens, verbatimMaxTokens);
+        }
+    }
+
+    @Override
+    public synchronized List<ChatMessage> messages() {
+        return new ArrayList<>(messages);
+    }
+
+    /**
+     * 未经压缩的对话，受 verbatimMaxTokens 约束；未保留原文时返回当前记忆
+     */
+    synchronized List<ChatMessage> verbatimMessages() {
+        return new ArrayList<>(verbatimMaxTokens > 0 ? verbatim : messages);
+    }
+
+    @Override
+    public synchronized void clear() {
+        messages.clear();
+        verbatim.clear();
+        tokens.clear();
+        compacted.clear();
+        totalTokens = 0;
+        verbatimTokens.clear();
+        verbatimTotalTokens = 0;
+    }
+
+    private void compact() {
+        int end = messages.size() - keepRecentMessages;
+        for (int i = 0; i < end && totalTokens > maxTokens; i++) {
+            if (compacted.get(i) || !(messages.get(i) instanceof ToolExecutionResultMessage result)) {
+                continue;
+            }
+            String text = result.text();
+            if (text == null || text.length() <= digestChars) {
+                continue;
+            }
+            int original = tokens.get(i);
+            // 截断点不拆开代理对
+            int cut = digestChars > 0 && Character.isHighSurrogate(text.charAt(digestChars - 1)) ? digestChars - 1 : digestChars;
+            ToolExecutionResultMessage digest = ToolExecutionResultMessage.from(result.id(), result.toolName(),
+                    text.substring(0, cut) + String.format(DIGEST_SUFFIX, original));
+            int size = estimator.estimateTokenCountInMessage(digest);
+            messages.set(i, digest);
+            tokens.set(i, size);
+            compacted.set(i, true);
+            totalTokens += size - original;
+        }
+        totalTokens = evict(messages, tokens, compacted, totalTokens, maxTokens);
+    }
+
+    /**
+     * 超出预算时移除最早的完整轮次，用户消息与最近若干条消息不移除；返回移除后的 token 数
+     */
+    private int evict(List<ChatMessage> window, List<Integer> sizes, List<Boolean> flags,
+                      int total, int budget) {
+        int first = !window.isEmpty() && window.get(0) instanceof SystemMessage ? 1 : 0;
+        while (total > budget) {
+            int limit = window.size() - keepRecentMessages;
+            int start = -1;
+            for (int i = first; i < limit; i++) {
+                if (window.get(i) instanceof AiMessage) {
+                    start = i;
+                    break;
+                }
+            }
+            if (start < 0) {
+                return total;
+            }
+            int end = start + 1;
+            while (end < window.size() && window.get(end) instanceof ToolExecutionResultMessage) {
+                end++;
+            }
+            if (end > limit) {
+                return total;
+            }
+            for (int i = end - 1; i >= start; i--) {
+                total -= sizes.remove(i);
+                window.remove(i);
+                if (flags != null) {
+                    flags.remove(i);
+                }
+            }
+        }
+        return total;
+    }
+}
@@ -53,6 +53,12 @@ public class ResearchController {
         return Result.ok(researchService.sendMessage(researchId, sendMessageReqDTO));
     }
 
+    @PostMapping("/{researchId}/cancel")
+    public Result<Void> cancelResearch(@PathVariable String researchId) {
+        researchService.cancelResearch(researchId);
+        return Result.ok();
+    }
+
     @GetMapping("/sse")
     public SseEmitter stream(
             @RequestHeader("X-Research-Id") String researchId,
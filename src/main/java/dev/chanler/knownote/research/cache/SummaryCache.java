@@ -0,0 +1,130 @@
+package dev.chanler.knownote.research.cache;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.chanler.knownote.config.ResearchProperties;
+import dev.chanler.knownote.research.schema.SummarySchema;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static dev.chanler.knownote.research.prompt.SearchPrompts.SUMMARIZE_WEBPAGE_PROMPT_VERSION;
+
+/**
+ * 网页摘要缓存：本地 Caffeine + Redis 两级，按 (内容 SHA-256, 模型, 提示词版本) 寻址
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SummaryCache {
+
+    private static final String SUMMARY_KEY = "research:summary:{}";
+
+    private final ResearchProperties researchProperties;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    private Cache<String, CachedSummary> localCache;
+    private Counter localHits;
+    private Counter redisHits;
+    private Counter misses;
+    private Counter savedInputTokens;
+    private Counter savedOutputTokens;
+
+    @PostConstruct
+    public void init() {
+        ResearchProperties.SummaryCache config = researchProperties.getSummaryCache();
+        localCache = Caffeine.newBuilder()
+                .maximumWeight(config.getLocalMaxWeightBytes())
+                .weigher((String key, CachedSummary value) -> value.weight())
+                .expireAfterAccess(Duration.ofHours(config.getLocalExpireHours()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, "research.summary.local");
+        localHits = meterRegistry.counter("research.summary.cache", "result", "hit", "tier", "local");
+        redisHits = meterRegistry.counter("research.summary.cache", "result", "hit", "tier", "redis");
+        misses = meterRegistry.counter("research.summary.cache", "result", "miss", "tier", "none");
+        savedInputTokens = meterRegistry.counter("research.summary.cache.saved.tokens", "type", "input");
+        savedOutputTokens = meterRegistry.counter("research.summary.cache.saved.tokens", "type", "output");
+    }
+
+    public boolean isEnabled() {
+        return researchProperties.getSummaryCache().isEnabled();
+    }
+
+    public String key(String webpageContent, String modelId) {
+        return StrUtil.format("{}:{}:{}", DigestUtil.sha256Hex(webpageContent),
+                StrUtil.blankToDefault(modelId, "default"), SUMMARIZE_WEBPAGE_PROMPT_VERSION);
+    }
+
+    /**
+     * 查询摘要，未命中返回 null；Redis 命中会回填本地缓存
+     */
+    public SummarySchema get(String key) {
+        CachedSummary cached = localCache.getIfPresent(key);
+        if (cached != null) {
+            localHits.increment();
+            recordSaved(cached);
+            return cached.toSchema();
+        }
+        try {
+            String json = stringRedisTemplate.opsForValue().get(StrUtil.format(SUMMARY_KEY, key));
+            if (json != null) {
+                cached = objectMapper.readValue(json, CachedSummary.class);
+                localCache.put(key, cached);
+                redisHits.increment();
+                recordSaved(cached);
+                return cached.toSchema();
+            }
+        } catch (Exception e) {
+            log.warn("读取摘要缓存失败 key={}", key, e);
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(String key, SummarySchema summary, long inputTokens, long outputTokens) {
+        CachedSummary cached = new CachedSummary(summary.getSummary(), summary.getKeyExcerpts(),
+                inputTokens, outputTokens);
+        localCache.put(key, cached);
+        try {
+            stringRedisTemplate.opsForValue().set(StrUtil.format(SUMMARY_KEY, key),
+                    objectMapper.writeValueAsString(cached),
+                    researchProperties.getSummaryCache().getRedisTtlHours(), TimeUnit.HOURS);
+        } catch (Exception e) {
+            log.warn("写入摘要缓存失败 key={}", key, e);
+        }
+    }
+
+    private void recordSaved(CachedSummary cached) {
+        savedInputTokens.increment(cached.inputTokens());
+        savedOutputTokens.increment(cached.outputTokens());
+    }
+
+    public record CachedSummary(String summary, String keyExcerpts, long inputTokens, long outputTokens) {
+
+        int weight() {
+            int chars = StrUtil.length(summary) + StrUtil.length(keyExcerpts);
+            return 64 + chars * 2;
+        }
+
+        SummarySchema toSchema() {
+            SummarySchema schema = new SummarySchema();
+            schema.setSummary(summary);
+            schema.setKeyExcerpts(keyExcerpts);
+            return schema;
+        }
+    }
+}
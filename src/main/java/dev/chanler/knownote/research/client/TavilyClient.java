@@ -3,16 +3,40 @@ package dev.chanler.knownote.research.client;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import dev.chanler.knownote.config.TavilyProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import cn.hutool.http.HttpRequest;
-import cn.hutool.http.HttpResponse;
+import cn.hutool.core.util.StrUtil;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Tavily 搜索 API 客户端
@@ -22,33 +46,332 @@ import java.util.List;
 @Slf4j
 public class TavilyClient {
     private final TavilyProperties tavilyProperties;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectMapper objectMapper;
+
+    // 相同查询只发一次请求，其余调用方共享结果
+    private final Map<SearchKey, SearchCall> inFlight = new ConcurrentHashMap<>();
+    private Cache<SearchKey, TavilyResponse> cache;
+    private ExecutorService executor;
+    private HttpClient httpClient;
+    private AsyncPermits permits;
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newFixedThreadPool(tavilyProperties.getExecutorThreads(),
+            Thread.ofPlatform().name("tavily-", 0).daemon(true).factory());
+        httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(tavilyProperties.getConnectTimeout())
+            .executor(executor)
+            .build();
+        permits = new AsyncPermits(tavilyProperties.getMaxConnections());
+
+        TavilyProperties.Cache config = tavilyProperties.getCache();
+        cache = Caffeine.newBuilder()
+            .maximumWeight(config.getMaxWeightBytes())
+            .weigher((SearchKey key, TavilyResponse value) -> value.weight())
+            .expireAfter(new Expiry<SearchKey, TavilyResponse>() {
+                @Override
+                public long expireAfterCreate(SearchKey key, TavilyResponse value, long currentTime) {
+                    return tavilyProperties.getCache().getTtl(key.topic()).toNanos();
+                }
+
+                @Override
+                public long expireAfterUpdate(SearchKey key, TavilyResponse value, long currentTime, long currentDuration) {
+                    return expireAfterCreate(key, value, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(SearchKey key, TavilyResponse value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (httpClient != null) {
+            httpClient.close();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
 
     public TavilyResponse search(String query, int maxResults, String topic, boolean includeRawContent) {
+        CompletableFuture<TavilyResponse> future = searchAsync(query, maxResults, topic, includeRawContent);
         try {
-            TavilyRequest request = new TavilyRequest(
-                query, maxResults, topic, includeRawContent
-            );
+            return future.get(maxWaitMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            log.warn("Tavily search timed out: {}", query);
+            return new TavilyResponse(List.of());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            log.warn("Tavily search interrupted: {}", query);
+            return new TavilyResponse(List.of());
+        } catch (ExecutionException e) {
+            log.error("Tavily search failed for: {}", query, e.getCause());
+            return new TavilyResponse(List.of());
+        }
+    }
+
+    /**
+     * 同步等待上限：每次尝试的请求超时加上全部重试的最长退避；请求超时只覆盖到响应头，响应体读取由此兜底
+     */
+    private long maxWaitMillis() {
+        TavilyProperties.Retry retry = tavilyProperties.getRetry();
+        return tavilyProperties.getRequestTimeout().toMillis() * (retry.getMaxRetries() + 1)
+            + retry.getMaxBackoff().toMillis() * retry.getMaxRetries();
+    }
+
+    /**
+     * 异步搜索；失败时以空结果完成，不抛出异常
+     * <p>
+     * 取消返回的 Future 即放弃等待，共享同一请求的调用方全部放弃后中止在途 HTTP 请求与后续重试
+     */
+    public CompletableFuture<TavilyResponse> searchAsync(String query, int maxResults, String topic, boolean includeRawContent) {
+        SearchKey key = SearchKey.of(query, maxResults, topic, includeRawContent);
+        boolean cacheEnabled = tavilyProperties.getCache().isEnabled();
+        if (cacheEnabled) {
+            TavilyResponse cached = cache.getIfPresent(key);
+            if (cached != null) {
+                log.debug("Tavily cache hit: query='{}', topic='{}'", key.query(), key.topic());
+                return CompletableFuture.completedFuture(cached);
+            }
+        }
 
-            String json = objectMapper.writeValueAsString(request);
+        while (true) {
+            SearchCall created = new SearchCall();
+            SearchCall existing = inFlight.putIfAbsent(key, created);
+            if (existing == null) {
+                start(key, created, new TavilyRequest(query, maxResults, key.topic(), includeRawContent), cacheEnabled);
+                return created.subscribe();
+            }
+            if (existing.join()) {
+                log.debug("Tavily request coalesced: query='{}', topic='{}'", key.query(), key.topic());
+                return existing.subscribe();
+            }
+            // 已被全部调用方放弃的请求不再复用
+            inFlight.remove(key, existing);
+        }
+    }
 
-            log.debug("Tavily search: query='{}', maxResults={}, topic='{}'", query, maxResults, topic);
+    private void start(SearchKey key, SearchCall call, TavilyRequest request, boolean cacheEnabled) {
+        log.debug("Tavily search: query='{}', maxResults={}, topic='{}'", request.query(), request.maxResults(), key.topic());
+        execute(request, 0, call).whenComplete((response, e) -> {
+            // 失败时返回空结果，不写缓存以便下次重试
+            if (e == null && cacheEnabled && !response.results().isEmpty()) {
+                cache.put(key, response);
+            }
+            inFlight.remove(key, call);
+            if (e != null) {
+                call.result.completeExceptionally(e);
+            } else {
+                call.result.complete(response);
+            }
+        });
+    }
 
-            try (HttpResponse response = HttpRequest.post(tavilyProperties.getBaseUrl() + "/search")
+    private CompletableFuture<TavilyResponse> execute(TavilyRequest request, int attempt, SearchCall call) {
+        HttpRequest httpRequest;
+        try {
+            httpRequest = HttpRequest.newBuilder(URI.create(tavilyProperties.getBaseUrl() + "/search"))
+                .timeout(tavilyProperties.getRequestTimeout())
                 .header("Authorization", "Bearer " + tavilyProperties.getApiKey())
                 .header("Content-Type", "application/json")
-                .body(json)
-                .timeout(10_000)
-                .execute()) {
-                if (!response.isOk() || response.body() == null) {
-                    log.error("Tavily API failed: code={}", response.getStatus());
-                    return new TavilyResponse(List.of());
-                }
-                return objectMapper.readValue(response.body(), TavilyResponse.class);
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(request)))
+                .build();
+        } catch (IOException e) {
+            log.error("Tavily request serialization failed for: {}", request.query(), e);
+            return CompletableFuture.completedFuture(new TavilyResponse(List.of()));
+        }
+
+        CompletableFuture<TavilyResponse> attemptFuture = call.track(permits.acquire())
+            // 响应体读完后再解析，不在 HttpClient 执行器上阻塞读取流
+            .thenCompose(ignored -> call.track(httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofByteArray()))
+                .thenApply(this::readResponse)
+                .whenComplete((response, e) -> permits.release()));
+
+        return attemptFuture.exceptionallyCompose(e -> {
+            if (call.isCancelled()) {
+                log.debug("Tavily search abandoned: {}", request.query());
+                return CompletableFuture.completedFuture(new TavilyResponse(List.of()));
+            }
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            TavilyProperties.Retry retry = tavilyProperties.getRetry();
+            if (attempt < retry.getMaxRetries() && isRetryable(cause)) {
+                long delayMillis = backoffMillis(attempt, cause);
+                log.warn("Tavily request failed, retry {}/{} in {}ms: {}",
+                    attempt + 1, retry.getMaxRetries(), delayMillis, cause.getMessage());
+                Executor delayed = CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS, executor);
+                return call.track(CompletableFuture.runAsync(() -> { }, delayed))
+                    .thenCompose(ignored -> execute(request, attempt + 1, call));
+            }
+            log.error("Tavily search failed for: {}", request.query(), cause);
+            return CompletableFuture.completedFuture(new TavilyResponse(List.of()));
+        });
+    }
+
+    private TavilyResponse readResponse(HttpResponse<byte[]> response) {
+        try {
+            int status = response.statusCode();
+            if (status == 429 || status >= 500) {
+                long retryAfterSeconds = response.headers().firstValueAsLong("Retry-After").orElse(-1L);
+                throw new RetryableStatusException(status, retryAfterSeconds);
             }
+            if (status != 200) {
+                log.error("Tavily API failed: code={}", status);
+                return new TavilyResponse(List.of());
+            }
+            TavilyResponse parsed = objectMapper.readValue(response.body(), TavilyResponse.class);
+            return parsed.results() != null ? parsed : new TavilyResponse(List.of());
         } catch (IOException e) {
-            log.error("Tavily search failed for: {}", query, e);
-            return new TavilyResponse(List.of());
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean isRetryable(Throwable cause) {
+        return cause instanceof RetryableStatusException
+            || cause instanceof IOException
+            || cause instanceof UncheckedIOException;
+    }
+
+    private long backoffMillis(int attempt, Throwable cause) {
+        TavilyProperties.Retry retry = tavilyProperties.getRetry();
+        long maxMillis = retry.getMaxBackoff().toMillis();
+        if (cause instanceof RetryableStatusException statusException && statusException.retryAfterSeconds > 0) {
+            return Math.min(TimeUnit.SECONDS.toMillis(statusException.retryAfterSeconds), maxMillis);
+        }
+        long base = Math.min(retry.getInitialBackoff().toMillis() << attempt, maxMillis);
+        return base / 2 + ThreadLocalRandom.current().nextLong(base / 2 + 1);
+    }
+
+    private static class RetryableStatusException extends RuntimeException {
+        private final long retryAfterSeconds;
+
+        RetryableStatusException(int status, long retryAfterSeconds) {
+            super("Tavily API returned " + status);
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+    }
+
+    /**
+     * 非阻塞许可，限制同时在途的请求数
+     */
+    private static class AsyncPermits {
+        private final Queue<CompletableFuture<Void>> waiters = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger available;
+
+        AsyncPermits(int permits) {
+            this.available = new AtomicInteger(Math.max(1, permits));
+        }
+
+        CompletableFuture<Void> acquire() {
+            if (tryAcquire()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> waiter = new CompletableFuture<>();
+            waiters.add(waiter);
+            // 入队后再尝试一次，避免与 release 之间的竞态导致永久等待
+            if (tryAcquire()) {
+                // 已被 release 唤醒或已取消时归还多得的许可
+                if (!waiters.remove(waiter) || !waiter.complete(null)) {
+                    release();
+                }
+            }
+            return waiter;
+        }
+
+        void release() {
+            CompletableFuture<Void> waiter;
+            while ((waiter = waiters.poll()) != null) {
+                if (waiter.complete(null)) {
+                    return;
+                }
+            }
+            available.incrementAndGet();
+        }
+
+        private boolean tryAcquire() {
+            int current;
+            do {
+                current = available.get();
+                if (current <= 0) {
+                    return false;
+                }
+            } while (!available.compareAndSet(current, current - 1));
+            return true;
+        }
+    }
+
+    /**
+     * 合并后的一次搜索：记录等待的调用方数与当前阶段的 Future，全部调用方放弃时取消
+     */
+    private static class SearchCall {
+        private final CompletableFuture<TavilyResponse> result = new CompletableFuture<>();
+        private final AtomicInteger waiters = new AtomicInteger(1);
+        private volatile CompletableFuture<?> current;
+        private volatile boolean cancelled;
+
+        boolean join() {
+            int count;
+            do {
+                count = waiters.get();
+                if (count <= 0) {
+                    return false;
+                }
+            } while (!waiters.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        /**
+         * 每个调用方一个副本，副本被取消视为该调用方放弃
+         */
+        CompletableFuture<TavilyResponse> subscribe() {
+            CompletableFuture<TavilyResponse> copy = result.copy();
+            copy.whenComplete((response, e) -> {
+                if (copy.isCancelled() && waiters.decrementAndGet() == 0) {
+                    cancel();
+                }
+            });
+            return copy;
+        }
+
+        /**
+         * 登记当前阶段，已取消时立即取消该阶段；HttpClient 的 sendAsync Future 被取消会中止请求
+         */
+        <T> CompletableFuture<T> track(CompletableFuture<T> stage) {
+            current = stage;
+            if (cancelled) {
+                stage.cancel(true);
+            }
+            return stage;
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        private void cancel() {
+            cancelled = true;
+            CompletableFuture<?> stage = current;
+            if (stage != null) {
+                stage.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * 归一化后的查询键：忽略大小写与多余空白
+     */
+    record SearchKey(String query, int maxResults, String topic, boolean includeRawContent) {
+        static SearchKey of(String query, int maxResults, String topic, boolean includeRawContent) {
+            String normalizedQuery = StrUtil.trimToEmpty(query).replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+            String normalizedTopic = StrUtil.isBlank(topic) ? "general" : topic.trim().toLowerCase(Locale.ROOT);
+            return new SearchKey(normalizedQuery, maxResults, normalizedTopic, includeRawContent);
         }
     }
 
@@ -60,7 +383,19 @@ public class TavilyClient {
     ) {}
 
     @JsonIgnoreProperties(ignoreUnknown = true)
-    public record TavilyResponse(List<SearchResult> results) {}
+    public record TavilyResponse(List<SearchResult> results) {
+        int weight() {
+            if (results == null) {
+                return 0;
+            }
+            int chars = 0;
+            for (SearchResult result : results) {
+                chars += StrUtil.length(result.url()) + StrUtil.length(result.title())
+                    + StrUtil.length(result.content()) + StrUtil.length(result.rawContent());
+            }
+            return 64 + chars * 2;
+        }
+    }
 
     @JsonIgnoreProperties(ignoreUnknown = true)
     public record SearchResult(
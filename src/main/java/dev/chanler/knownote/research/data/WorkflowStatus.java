@@ -13,4 +13,5 @@ public class WorkflowStatus {
     public static final String IN_REPORT = "IN_REPORT";
     public static final String COMPLETED = "COMPLETED";
     public static final String FAILED = "FAILED";
+    public static final String CANCELLED = "CANCELLED";
 }
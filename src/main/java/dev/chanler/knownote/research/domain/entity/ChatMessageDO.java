@@ -20,7 +20,7 @@ import java.time.LocalDateTime;
 @TableName("chat_message")
 public class ChatMessageDO {
 
-    @TableId(value = "id", type = IdType.AUTO)
+    @TableId(value = "id", type = IdType.INPUT)
     private Long id;
     private String researchId;
     private String role;
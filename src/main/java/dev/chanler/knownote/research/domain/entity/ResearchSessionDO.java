@@ -1,6 +1,7 @@
 package dev.chanler.knownote.research.domain.entity;
 
 import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
 import com.baomidou.mybatisplus.annotation.TableId;
 import com.baomidou.mybatisplus.annotation.TableName;
 import lombok.AllArgsConstructor;
@@ -33,4 +34,6 @@ public class ResearchSessionDO {
     private LocalDateTime completeTime;
     private Long totalInputTokens;
     private Long totalOutputTokens;
+    @TableField(select = false)
+    private Long runMillis;
 }
@@ -20,7 +20,7 @@ import java.time.LocalDateTime;
 @TableName("workflow_event")
 public class WorkflowEventDO {
 
-    @TableId(value = "id", type = IdType.AUTO)
+    @TableId(value = "id", type = IdType.INPUT)
     private Long id;
     private String researchId;
     private String type;
@@ -2,10 +2,13 @@ package dev.chanler.knownote.research.domain.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import dev.chanler.knownote.research.domain.entity.ChatMessageDO;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
+import java.util.List;
+
 /**
  * 聊天消息 Mapper
  */
@@ -20,4 +23,18 @@ public interface ChatMessageMapper extends BaseMapper<ChatMessageDO> {
             ) t
             """)
     Integer selectMaxSequenceByResearchId(@Param("researchId") String researchId);
+
+    @Select("SELECT COALESCE(MAX(id), 0) FROM chat_message")
+    Long selectMaxId();
+
+    @Insert("""
+            <script>
+            INSERT INTO chat_message (id, research_id, role, content, sequence_no, create_time)
+            VALUES
+            <foreach collection="list" item="m" separator=",">
+                (#{m.id}, #{m.researchId}, #{m.role}, #{m.content}, #{m.sequenceNo}, #{m.createTime})
+            </foreach>
+            </script>
+            """)
+    int insertBatch(@Param("list") List<ChatMessageDO> messages);
 }
@@ -32,6 +32,9 @@ public interface ResearchSessionMapper extends BaseMapper<ResearchSessionDO> {
                        @Param("setStartTime") boolean setStartTime, @Param("setCompleteTime") boolean setCompleteTime,
                        @Param("inputTokens") long inputTokens, @Param("outputTokens") long outputTokens);
 
+    @Update("UPDATE research_session SET run_millis = #{runMillis} WHERE id = #{id}")
+    void updateRunMillis(@Param("id") String id, @Param("runMillis") long runMillis);
+
     @Update("""
             UPDATE research_session
             SET status = 'QUEUE', update_time = NOW()
@@ -56,7 +59,7 @@ public interface ResearchSessionMapper extends BaseMapper<ResearchSessionDO> {
     @Select("""
             SELECT COUNT(*) FROM research_session 
             WHERE model_id = #{modelId} 
-            AND status NOT IN ('COMPLETED', 'FAILED')
+            AND status NOT IN ('COMPLETED', 'FAILED', 'CANCELLED')
             """)
     int countActiveUsage(@Param("modelId") String modelId);
 }
@@ -2,11 +2,30 @@ package dev.chanler.knownote.research.domain.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import dev.chanler.knownote.research.domain.entity.WorkflowEventDO;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
 
 /**
  * 工作流事件 Mapper
  */
 @Mapper
 public interface WorkflowEventMapper extends BaseMapper<WorkflowEventDO> {
+
+    @Select("SELECT COALESCE(MAX(id), 0) FROM workflow_event")
+    Long selectMaxId();
+
+    @Insert("""
+            <script>
+            INSERT INTO workflow_event (id, research_id, type, title, content, parent_event_id, sequence_no, create_time)
+            VALUES
+            <foreach collection="list" item="e" separator=",">
+                (#{e.id}, #{e.researchId}, #{e.type}, #{e.title}, #{e.content}, #{e.parentEventId}, #{e.sequenceNo}, #{e.createTime})
+            </foreach>
+            </script>
+            """)
+    int insertBatch(@Param("list") List<WorkflowEventDO> events);
 }
@@ -0,0 +1,17 @@
+package dev.chanler.knownote.research.exception;
+
+import lombok.Getter;
+
+/**
+ * 研究被取消或超过截止时间，由取消检查点抛出
+ */
+@Getter
+public class ResearchCancelledException extends WorkflowException {
+
+    private final String reason;
+
+    public ResearchCancelledException(String researchId, String reason) {
+        super("Research " + researchId + " aborted: " + reason);
+        this.reason = reason;
+    }
+}
@@ -0,0 +1,75 @@
+package dev.chanler.knownote.research.model;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.Content;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.TokenCountEstimator;
+import org.springframework.stereotype.Component;
+
+/**
+ * 无需分词器的 token 估算：汉字按 1 token，其余字符按 4 个 1 token，每条消息另加固定开销
+ * <p>
+ * 用于速率预扣与对话记忆预算，可替换为模型对应的 TokenCountEstimator 实现
+ */
+@Component
+public class HeuristicTokenCountEstimator implements TokenCountEstimator {
+
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+
+    @Override
+    public int estimateTokenCountInText(String text) {
+        if (text == null) {
+            return 0;
+        }
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            if (Character.UnicodeScript.of(codePoint) == Character.UnicodeScript.HAN) {
+                cjk++;
+            } else {
+                other++;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return cjk + (other + 3) / 4;
+    }
+
+    @Override
+    public int estimateTokenCountInMessage(ChatMessage message) {
+        int tokens = MESSAGE_OVERHEAD_TOKENS;
+        if (message instanceof SystemMessage systemMessage) {
+            tokens += estimateTokenCountInText(systemMessage.text());
+        } else if (message instanceof ToolExecutionResultMessage toolMessage) {
+            tokens += estimateTokenCountInText(toolMessage.text());
+        } else if (message instanceof UserMessage userMessage) {
+            for (Content content : userMessage.contents()) {
+                if (content instanceof TextContent textContent) {
+                    tokens += estimateTokenCountInText(textContent.text());
+                }
+            }
+        } else if (message instanceof AiMessage aiMessage) {
+            tokens += estimateTokenCountInText(aiMessage.text());
+            if (aiMessage.hasToolExecutionRequests()) {
+                for (ToolExecutionRequest request : aiMessage.toolExecutionRequests()) {
+                    tokens += estimateTokenCountInText(request.name()) + estimateTokenCountInText(request.arguments());
+                }
+            }
+        }
+        return tokens;
+    }
+
+    @Override
+    public int estimateTokenCountInMessages(Iterable<ChatMessage> messages) {
+        int tokens = 0;
+        for (ChatMessage message : messages) {
+            tokens += estimateTokenCountInMessage(message);
+        }
+        return tokens;
+    }
+}
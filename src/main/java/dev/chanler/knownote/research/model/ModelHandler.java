@@ -14,11 +14,13 @@ import java.util.concurrent.ConcurrentHashMap;
 @Component
 public class ModelHandler {
     private final ModelFactory modelFactory;
+    private final ModelThrottle modelThrottle;
     private final Map<String, ChatModel> modelPool = new ConcurrentHashMap<>();
     private final Map<String, StreamingChatModel> streamingModelPool = new ConcurrentHashMap<>();
 
-    public ModelHandler(ModelFactory modelFactory) {
+    public ModelHandler(ModelFactory modelFactory, ModelThrottle modelThrottle) {
         this.modelFactory = modelFactory;
+        this.modelThrottle = modelThrottle;
     }
 
     public ChatModel getModel(String researchId) {
@@ -30,8 +32,8 @@ public class ModelHandler {
     }
 
     public void addModel(String researchId, ResearchProperties.Model model) {
-        ChatModel chatModel = modelFactory.createChatModel(model);
-        StreamingChatModel streamingChatModel = modelFactory.createStreamingChatModel(model);
+        ChatModel chatModel = modelThrottle.wrap(model, modelFactory.createChatModel(model));
+        StreamingChatModel streamingChatModel = modelThrottle.wrap(model, modelFactory.createStreamingChatModel(model));
         modelPool.put(researchId, chatModel);
         streamingModelPool.put(researchId, streamingChatModel);
     }
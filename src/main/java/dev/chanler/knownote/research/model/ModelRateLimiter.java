@@ -0,0 +1,146 @@
+package dev.chanler.knownote.research.model;
+
+import cn.hutool.core.util.StrUtil;
+import dev.chanler.knownote.config.ResearchProperties;
+import dev.chanler.knownote.research.exception.WorkflowException;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.output.TokenUsage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模型调用速率限制：每个模型一个 Redis 令牌桶，同时限制每分钟请求数与估算 token 数，所有节点共享
+ * <p>
+ * 调用前按 TokenCountEstimator 估算请求 token 并预扣，容量不足时等待到 rate-limit-wait-seconds 为止；
+ * 响应返回后按实际 TokenUsage 多退少补
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ModelRateLimiter {
+
+    private static final String BUCKET_KEY = "research:model:{}:rate";
+    private static final long BUCKET_TTL_MILLIS = 120_000;
+
+    // KEYS[1]=bucket, ARGV[1]=rpm, ARGV[2]=tpm, ARGV[3]=tokens, ARGV[4]=ttl
+    // 以 Redis 时间按速率补充两个桶，均足够时扣减并返回 0，否则返回需等待的毫秒数
+    private static final RedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>("""
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+            local rpm = tonumber(ARGV[1])
+            local tpm = tonumber(ARGV[2])
+            local need = math.min(tonumber(ARGV[3]), tpm)
+            local state = redis.call('HMGET', KEYS[1], 'r', 't', 'ts')
+            local elapsed = math.max(0, now - (tonumber(state[3]) or now))
+            local r = math.min(rpm, (tonumber(state[1]) or rpm) + elapsed * rpm / 60000)
+            local t = math.min(tpm, (tonumber(state[2]) or tpm) + elapsed * tpm / 60000)
+            local wait = 0
+            if rpm > 0 and r < 1 then
+                wait = math.ceil((1 - r) * 60000 / rpm)
+            end
+            if tpm > 0 and t < need then
+                wait = math.max(wait, math.ceil((need - t) * 60000 / tpm))
+            end
+            if wait == 0 then
+                if rpm > 0 then r = r - 1 end
+                if tpm > 0 then t = t - need end
+            end
+            redis.call('HSET', KEYS[1], 'r', tostring(r), 't', tostring(t), 'ts', now)
+            redis.call('PEXPIRE', KEYS[1], ARGV[4])
+            return wait
+            """, Long.class);
+
+    // KEYS[1]=bucket, ARGV[1]=tpm, ARGV[2]=delta；delta 为预扣与实际之差，余额允许透支到 -tpm
+    private static final RedisScript<Long> ADJUST_SCRIPT = new DefaultRedisScript<>("""
+            local t = tonumber(redis.call('HGET', KEYS[1], 't'))
+            if not t then
+                return 0
+            end
+            local tpm = tonumber(ARGV[1])
+            t = math.max(-tpm, math.min(tpm, t + tonumber(ARGV[2])))
+            redis.call('HSET', KEYS[1], 't', tostring(t))
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final TokenCountEstimator tokenCountEstimator;
+
+    /**
+     * 等待速率容量并预扣，返回预扣的 token 数；未配置限额时直接返回 0
+     */
+    public long acquire(ResearchProperties.Model model, ChatRequest request) {
+        int rpm = Math.max(model.getRequestsPerMinute(), 0);
+        int tpm = Math.max(model.getTokensPerMinute(), 0);
+        if (rpm == 0 && tpm == 0) {
+            return 0;
+        }
+        long tokens = tpm > 0 ? estimateTokens(model, request) : 0;
+        String key = key(model);
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(model.getRateLimitWaitSeconds());
+        while (true) {
+            Long wait;
+            try {
+                wait = stringRedisTemplate.execute(ACQUIRE_SCRIPT, List.of(key),
+                        String.valueOf(rpm), String.valueOf(tpm), String.valueOf(tokens), String.valueOf(BUCKET_TTL_MILLIS));
+            } catch (Exception e) {
+                // Redis 不可用时放行，由服务端限流与 ModelThrottle 兜底
+                log.warn("模型速率限制不可用，直接放行 modelId={}", model.getId(), e);
+                return 0;
+            }
+            if (wait == null || wait <= 0) {
+                return Math.min(tokens, tpm);
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (wait > remaining) {
+                throw new WorkflowException("Rate limit wait exceeded for model: " + model.getId());
+            }
+            log.debug("模型速率已满，等待 modelId={}, waitMillis={}", model.getId(), wait);
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new WorkflowException("Interrupted while waiting for model rate limit: " + model.getId(), e);
+            }
+        }
+    }
+
+    /**
+     * 按实际用量修正预扣；无用量信息时保留预扣
+     */
+    public void settle(ResearchProperties.Model model, long reserved, TokenUsage tokenUsage) {
+        int tpm = model.getTokensPerMinute();
+        if (tpm <= 0 || tokenUsage == null || tokenUsage.totalTokenCount() == null) {
+            return;
+        }
+        long delta = reserved - tokenUsage.totalTokenCount();
+        if (delta == 0) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(ADJUST_SCRIPT, List.of(key(model)), String.valueOf(tpm), String.valueOf(delta));
+        } catch (Exception e) {
+            log.warn("模型 token 用量修正失败 modelId={}", model.getId(), e);
+        }
+    }
+
+    /**
+     * 输入按 TokenCountEstimator 估算，输出取请求的 maxOutputTokens，未设置时按 estimated-output-tokens
+     */
+    private long estimateTokens(ResearchProperties.Model model, ChatRequest request) {
+        long tokens = tokenCountEstimator.estimateTokenCountInMessages(request.messages());
+        Integer maxOutputTokens = request.maxOutputTokens();
+        return tokens + (maxOutputTokens != null ? maxOutputTokens : model.getEstimatedOutputTokens());
+    }
+
+    private static String key(ResearchProperties.Model model) {
+        return StrUtil.format(BUCKET_KEY, StrUtil.blankToDefault(model.getId(), "default"));
+    }
+}
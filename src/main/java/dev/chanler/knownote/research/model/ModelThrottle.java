@@ -0,0 +1,170 @@
+package dev.chanler.knownote.research.model;
+
+import cn.hutool.core.util.StrUtil;
+import dev.chanler.knownote.common.async.AdaptiveLimit;
+import dev.chanler.knownote.config.ResearchProperties;
+import dev.chanler.knownote.research.exception.WorkflowException;
+import dev.langchain4j.exception.InternalServerException;
+import dev.langchain4j.exception.RateLimitException;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 模型并发闸门：按模型自适应限制在途请求数，所有研究共享；进入并发闸门前先经过 ModelRateLimiter 的速率限制
+ * <p>
+ * 每次调用的延迟与限流、超时信号驱动该模型的 AIMD 上限；
+ * 跟随者（研究执行器的活跃研究上限）接收全部模型的信号
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ModelThrottle {
+
+    // 当前线程的模型调用通过速率与并发闸门时的回调
+    private static final ThreadLocal<Runnable> ADMISSION_LISTENER = new ThreadLocal<>();
+
+    private final ResearchProperties researchProperties;
+    private final MeterRegistry meterRegistry;
+    private final ModelRateLimiter modelRateLimiter;
+    // modelId -> 在途请求上限
+    private final Map<String, AdaptiveLimit> limits = new ConcurrentHashMap<>();
+    private final List<AdaptiveLimit> followers = new CopyOnWriteArrayList<>();
+
+    public ChatModel wrap(ResearchProperties.Model model, ChatModel delegate) {
+        return new ThrottledChatModel(delegate, model, StrUtil.blankToDefault(model.getId(), "default"), this);
+    }
+
+    public StreamingChatModel wrap(ResearchProperties.Model model, StreamingChatModel delegate) {
+        return new ThrottledStreamingChatModel(delegate, model, StrUtil.blankToDefault(model.getId(), "default"), this);
+    }
+
+    /**
+     * 在当前线程执行模型调用，通过速率与并发闸门后回调 onAdmitted，调用方据此只对模型本身的耗时计时
+     */
+    public static <T> T withAdmissionListener(Runnable onAdmitted, Supplier<T> call) {
+        ADMISSION_LISTENER.set(onAdmitted);
+        try {
+            return call.get();
+        } finally {
+            ADMISSION_LISTENER.remove();
+        }
+    }
+
+    static void notifyAdmitted() {
+        Runnable listener = ADMISSION_LISTENER.get();
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    /**
+     * 让上层并发上限随模型调用信号一起调整
+     */
+    public void addFollower(AdaptiveLimit limit) {
+        followers.add(limit);
+    }
+
+    /**
+     * 等待速率容量，返回预扣的 token 数
+     */
+    long admit(ResearchProperties.Model model, ChatRequest request) {
+        return modelRateLimiter.acquire(model, request);
+    }
+
+    void settle(ResearchProperties.Model model, long reserved, ChatResponse response) {
+        modelRateLimiter.settle(model, reserved, response != null ? response.tokenUsage() : null);
+    }
+
+    void acquire(String modelId) {
+        try {
+            limit(modelId).acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WorkflowException("Interrupted while waiting for model permit: " + modelId, e);
+        }
+    }
+
+    void release(String modelId) {
+        limit(modelId).release();
+    }
+
+    /**
+     * 记录调用结果：成功计入每输出 token 的延迟，限流、超时与服务端错误计为丢弃；取消与其他错误不参与调整
+     * <p>
+     * 工具调用轮次与汇总、报告的输出长度相差很大，按输出 token 归一化后才能与同一基线比较；无用量信息时只计成功
+     */
+    void record(String modelId, long rttNanos, ChatResponse response, Throwable error) {
+        boolean dropped = error != null && isDropped(error);
+        if (error != null && (!dropped || Thread.currentThread().isInterrupted())) {
+            return;
+        }
+        if (dropped) {
+            log.debug("模型调用被限流或超时，收缩并发上限 modelId={}, error={}", modelId, error.toString());
+        }
+        long latencyNanos = dropped ? 0 : perOutputToken(rttNanos, response);
+        limit(modelId).onSample(latencyNanos, dropped);
+        for (AdaptiveLimit follower : followers) {
+            follower.onSample(latencyNanos, dropped);
+        }
+    }
+
+    private static long perOutputToken(long rttNanos, ChatResponse response) {
+        TokenUsage tokenUsage = response != null ? response.tokenUsage() : null;
+        Integer outputTokens = tokenUsage != null ? tokenUsage.outputTokenCount() : null;
+        if (outputTokens == null || outputTokens <= 0) {
+            return 0;
+        }
+        return rttNanos / outputTokens;
+    }
+
+    private AdaptiveLimit limit(String modelId) {
+        return limits.computeIfAbsent(modelId, this::createLimit);
+    }
+
+    private AdaptiveLimit createLimit(String modelId) {
+        ResearchProperties.Limiter limiter = researchProperties.getLimiter();
+        int initial = researchProperties.getModel().getMaxConcurrentRequests();
+        AdaptiveLimit limit = limiter.isEnabled()
+                ? new AdaptiveLimit(initial, limiter.getMinModelRequests(),
+                        Math.max(initial, limiter.getMaxModelRequests()), limiter.getBackoffRatio(), limiter.getLatencyTolerance(),
+                        TimeUnit.MILLISECONDS.toNanos(limiter.getBackoffWindowMs()))
+                : new AdaptiveLimit(initial, initial, initial, 1, Double.MAX_VALUE, 0);
+        Gauge.builder("research.concurrency.limit", limit, AdaptiveLimit::getLimit)
+                .tag("scope", "model").tag("model", modelId).register(meterRegistry);
+        Gauge.builder("research.concurrency.inflight", limit, AdaptiveLimit::getInflight)
+                .tag("scope", "model").tag("model", modelId).register(meterRegistry);
+        return limit;
+    }
+
+    private static boolean isDropped(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof RateLimitException
+                    || t instanceof dev.langchain4j.exception.TimeoutException
+                    || t instanceof InternalServerException
+                    || t instanceof SocketTimeoutException
+                    || t instanceof HttpTimeoutException
+                    || t instanceof TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,72 @@
+package dev.chanler.knownote.research.model;
+
+import dev.chanler.knownote.config.ResearchProperties;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 受 ModelThrottle 限流的 ChatModel，调用耗时与错误反馈给自适应上限
+ */
+class ThrottledChatModel implements ChatModel {
+
+    private final ChatModel delegate;
+    private final ResearchProperties.Model model;
+    private final String modelId;
+    private final ModelThrottle throttle;
+
+    ThrottledChatModel(ChatModel delegate, ResearchProperties.Model model, String modelId, ModelThrottle throttle) {
+        this.delegate = delegate;
+        this.model = model;
+        this.modelId = modelId;
+        this.throttle = throttle;
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        long reserved = throttle.admit(model, chatRequest);
+        throttle.acquire(modelId);
+        ModelThrottle.notifyAdmitted();
+        long start = System.nanoTime();
+        ChatResponse response = null;
+        Throwable error = null;
+        try {
+            response = delegate.chat(chatRequest);
+            throttle.settle(model, reserved, response);
+            return response;
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            throttle.record(modelId, System.nanoTime() - start, response, error);
+            throttle.release(modelId);
+        }
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        return delegate.listeners();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+}
@@ -0,0 +1,117 @@
+package dev.chanler.knownote.research.model;
+
+import dev.chanler.knownote.config.ResearchProperties;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.chat.response.StreamingHandle;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 受 ModelThrottle 限流的 StreamingChatModel，许可在流结束、出错或被取消时归还
+ * <p>
+ * 延迟在流结束时按输出 token 归一化，与阻塞调用共用同一基线
+ */
+class ThrottledStreamingChatModel implements StreamingChatModel {
+
+    private final StreamingChatModel delegate;
+    private final ResearchProperties.Model model;
+    private final String modelId;
+    private final ModelThrottle throttle;
+
+    ThrottledStreamingChatModel(StreamingChatModel delegate, ResearchProperties.Model model, String modelId,
+                                ModelThrottle throttle) {
+        this.delegate = delegate;
+        this.model = model;
+        this.modelId = modelId;
+        this.throttle = throttle;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        long reserved = throttle.admit(model, chatRequest);
+        throttle.acquire(modelId);
+        long start = System.nanoTime();
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                throttle.release(modelId);
+            }
+        };
+        try {
+            delegate.chat(chatRequest, new StreamingChatResponseHandler() {
+                @Override
+                public void onPartialResponse(String partialResponse) {
+                    handler.onPartialResponse(partialResponse);
+                }
+
+                @Override
+                public void onPartialResponse(PartialResponse partialResponse, PartialResponseContext context) {
+                    // 流被取消后不再回调完成或出错，取消时归还许可
+                    StreamingHandle handle = context.streamingHandle();
+                    handler.onPartialResponse(partialResponse, new PartialResponseContext(new StreamingHandle() {
+                        @Override
+                        public void cancel() {
+                            handle.cancel();
+                            release.run();
+                        }
+
+                        @Override
+                        public boolean isCancelled() {
+                            return handle.isCancelled();
+                        }
+                    }));
+                }
+
+                @Override
+                public void onCompleteResponse(ChatResponse completeResponse) {
+                    throttle.record(modelId, System.nanoTime() - start, completeResponse, null);
+                    release.run();
+                    throttle.settle(model, reserved, completeResponse);
+                    handler.onCompleteResponse(completeResponse);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    throttle.record(modelId, System.nanoTime() - start, null, error);
+                    release.run();
+                    handler.onError(error);
+                }
+            });
+        } catch (RuntimeException e) {
+            throttle.record(modelId, System.nanoTime() - start, null, e);
+            release.run();
+            throw e;
+        }
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        return delegate.listeners();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+}
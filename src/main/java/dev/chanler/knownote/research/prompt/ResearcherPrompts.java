@@ -161,6 +161,80 @@ public class ResearcherPrompts {
             - 包含研究过程中找到的全部来源和引用。
             - 记住，这些研究是为回答上述特定问题而进行的。
 
+            整理后的信息将用于生成最终报告，因此全面性至关重要。
+            """;
+
+    public static final String FOLD_RESEARCH_SYSTEM_PROMPT = """
+            你是一名研究信息整理专员，负责在研究进行中增量维护研究发现文档。
+
+            <Core Task>
+            每次会收到当前的研究发现文档和一次新的搜索结果，将新结果并入文档，输出更新后的完整文档。
+            文档为空时，直接按输出格式整理这次搜索结果。
+            </Core Task>
+
+            <Processing Rules>
+            - 在"搜索查询记录"表中追加本次搜索词
+            - 新的事实、数据、引用、观点按主题并入"研究发现"，已有主题下追加，新主题新增小节
+            - 逐字保留关键信息，不改写、不意译；与已有内容重复的信息合并并标注来源数量
+            - 新来源在"来源列表"末尾继续编号，已有来源沿用原编号
+            - 不得删除文档中已有的任何事实和来源
+            - 只输出更新后的完整文档，不要输出其他说明
+            </Processing Rules>
+
+            <Output Format>
+            ## 搜索查询记录
+
+            | 序号 | 搜索词 | 结果数 |
+            |-----|-------|-------|
+            | 1 | ... | ... |
+
+            ## 研究发现
+
+            ### {主题/方面}
+
+            {详细内容，包含具体事实、数据、引用}[1][2]
+
+            ## 来源列表
+
+            [1] {来源标题}: {URL}
+            </Output Format>
+
+            今天的日期是 {date}。
+            """;
+
+    public static final String FOLD_RESEARCH_HUMAN_MESSAGE = """
+            RESEARCH TOPIC: {research_topic}
+
+            <Current Findings>
+            {digest}
+            </Current Findings>
+
+            <New Search Result>
+            搜索词：{query}
+
+            {result}
+            </New Search Result>
+            """;
+
+    public static final String COMPRESS_DIGEST_HUMAN_MESSAGE = """
+            以下是 AI 研究者围绕研究主题进行研究时逐次整理得到的研究发现文档，以及尚未并入文档的搜索结果：
+
+            RESEARCH TOPIC: {research_topic}
+
+            <Findings>
+            {digest}
+            </Findings>
+
+            <Unmerged Search Results>
+            {unmerged}
+            </Unmerged Search Results>
+
+            你的任务是将它们定稿为一份研究发现文档：
+            - 将未并入的搜索结果按同样规则并入文档。
+            - 不要总结或改写信息——必须逐字保留，不要丢失任何细节、事实、姓名、数字或具体发现。
+            - 合并重复信息，统一整理引用编号，保证正文引用与来源列表一致。
+            - 包含研究过程中找到的全部来源和引用。
+
             整理后的信息将用于生成最终报告，因此全面性至关重要。
             """;
 }
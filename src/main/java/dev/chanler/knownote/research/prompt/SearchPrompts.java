@@ -7,6 +7,11 @@ import org.springframework.stereotype.Component;
  */
 @Component
 public class SearchPrompts {
+    /**
+     * 摘要提示词版本，修改 SUMMARIZE_WEBPAGE_PROMPT 时需同步递增以失效摘要缓存
+     */
+    public static final String SUMMARIZE_WEBPAGE_PROMPT_VERSION = "v1";
+
     public static final String SUMMARIZE_WEBPAGE_PROMPT = """
             你是一名信息提取专员，负责从网页内容中提取关键信息，生成结构化摘要供研究使用。
 
@@ -22,4 +22,6 @@ public interface ResearchService {
     ResearchMessageRespDTO getResearchMessages(String researchId);
 
     SendMessageRespDTO sendMessage(String researchId, SendMessageReqDTO sendMessageReqDTO);
+
+    void cancelResearch(String researchId);
 }
@@ -1,37 +1,39 @@
 package dev.chanler.knownote.research.service.impl;
 
-import cn.hutool.core.util.StrUtil;
+import cn.hutool.core.util.ObjectUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import dev.chanler.knownote.common.UserContext;
+import dev.chanler.knownote.common.async.ResearchRunRegistry;
+import dev.chanler.knownote.common.async.ResearchTaskExecutor;
 import dev.chanler.knownote.common.util.CacheUtil;
+import dev.chanler.knownote.common.util.EventPublisher;
+import dev.chanler.knownote.common.util.ResearchCheckpointStore;
 import dev.chanler.knownote.config.ResearchProperties;
 import dev.chanler.knownote.research.api.dto.req.SendMessageReqDTO;
 import dev.chanler.knownote.research.api.dto.resp.CreateResearchRespDTO;
 import dev.chanler.knownote.research.api.dto.resp.ResearchMessageRespDTO;
 import dev.chanler.knownote.research.api.dto.resp.ResearchStatusRespDTO;
 import dev.chanler.knownote.research.api.dto.resp.SendMessageRespDTO;
+import dev.chanler.knownote.research.data.EventType;
 import dev.chanler.knownote.research.data.TimelineItem;
 import dev.chanler.knownote.research.data.WorkflowStatus;
 import dev.chanler.knownote.research.domain.entity.ChatMessageDO;
 import dev.chanler.knownote.research.domain.entity.ResearchSessionDO;
 import dev.chanler.knownote.research.domain.entity.WorkflowEventDO;
-import dev.chanler.knownote.research.domain.mapper.ChatMessageMapper;
 import dev.chanler.knownote.research.domain.mapper.ResearchSessionMapper;
 import dev.chanler.knownote.research.exception.ResearchException;
 import dev.chanler.knownote.research.model.ModelHandler;
 import dev.chanler.knownote.research.service.ResearchService;
 import dev.chanler.knownote.research.state.DeepResearchState;
+import dev.chanler.knownote.research.state.ResearchStateFactory;
 import dev.chanler.knownote.research.workflow.AgentPipeline;
-import dev.langchain4j.data.message.AiMessage;
-import dev.langchain4j.data.message.UserMessage;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -43,11 +45,15 @@ import java.util.stream.Collectors;
 public class ResearchServiceImpl implements ResearchService {
 
     private final ResearchSessionMapper researchSessionMapper;
-    private final ChatMessageMapper chatMessageMapper;
     private final AgentPipeline agentPipeline;
     private final CacheUtil cacheUtil;
     private final ModelHandler modelHandler;
     private final ResearchProperties researchProperties;
+    private final ResearchStateFactory researchStateFactory;
+    private final ResearchTaskExecutor researchTaskExecutor;
+    private final ResearchRunRegistry researchRunRegistry;
+    private final EventPublisher eventPublisher;
+    private final ResearchCheckpointStore checkpointStore;
 
     @Override
     public CreateResearchRespDTO createResearch(Integer num) {
@@ -202,7 +208,7 @@ public class ResearchServiceImpl implements ResearchService {
 
         if (!StringUtils.hasText(modelId)) {
             String requestedModelId = sendMessageReqDTO.getModelId();
-            ResearchProperties.Model modelConfig = resolveModelConfig(requestedModelId);
+            ResearchProperties.Model modelConfig = researchStateFactory.resolveModelConfig(requestedModelId);
             modelId = StringUtils.hasText(modelConfig.getId()) ? modelConfig.getId() : "default";
 
             String title = sendMessageReqDTO.getContent().length() > 20
@@ -215,7 +221,7 @@ public class ResearchServiceImpl implements ResearchService {
             researchSessionMapper.setInfoIfNull(researchId, modelId, budget, title);
         }
 
-        ResearchProperties.Model modelConfig = resolveModelConfig(modelId);
+        ResearchProperties.Model modelConfig = researchStateFactory.resolveModelConfig(modelId);
         modelHandler.addModel(researchId, modelConfig);
 
         ResearchProperties.BudgetLevel budgetLevel = researchProperties.getBudget().getLevel(budget);
@@ -224,37 +230,9 @@ public class ResearchServiceImpl implements ResearchService {
         }
 
         cacheUtil.saveMessage(researchId, "user", sendMessageReqDTO.getContent());
+        cacheUtil.flush();
 
-        LambdaQueryWrapper<ChatMessageDO> historyQuery = Wrappers.lambdaQuery(ChatMessageDO.class)
-                .eq(ChatMessageDO::getResearchId, researchId)
-                .orderByAsc(ChatMessageDO::getSequenceNo);
-        List<ChatMessageDO> dbMessages = chatMessageMapper.selectList(historyQuery);
-
-        List<dev.langchain4j.data.message.ChatMessage> chatHistory = new ArrayList<>();
-        for (ChatMessageDO msg : dbMessages) {
-            if ("user".equals(msg.getRole())) {
-                chatHistory.add(UserMessage.from(msg.getContent()));
-            } else if ("assistant".equals(msg.getRole())) {
-                chatHistory.add(AiMessage.from(msg.getContent()));
-            }
-        }
-
-        DeepResearchState state = DeepResearchState.builder()
-                .researchId(researchId)
-                .chatHistory(chatHistory)
-                .status(WorkflowStatus.QUEUE)
-                .budget(budgetLevel)
-                .supervisorIterations(0)
-                .conductCount(0)
-                .supervisorNotes(new ArrayList<>())
-                .researcherIterations(0)
-                .searchCount(0)
-                .researcherNotes(new ArrayList<>())
-                .searchResults(new HashMap<>())
-                .searchNotes(new ArrayList<>())
-                .totalInputTokens(0L)
-                .totalOutputTokens(0L)
-                .build();
+        DeepResearchState state = researchStateFactory.create(researchId, userId, modelId, budget, budgetLevel);
         agentPipeline.run(state);
 
         return SendMessageRespDTO.builder()
@@ -263,6 +241,39 @@ public class ResearchServiceImpl implements ResearchService {
                 .build();
     }
 
+    @Override
+    public void cancelResearch(String researchId) {
+        Long userId = requireUserId();
+        ResearchSessionDO session = researchSessionMapper.selectById(researchId);
+        if (session == null) {
+            throw new ResearchException("研究任务不存在");
+        }
+        if (!userId.equals(session.getUserId())) {
+            throw new ResearchException("无权访问此研究");
+        }
+        String status = session.getStatus();
+        if (!WorkflowStatus.QUEUE.equals(status) && !WorkflowStatus.START.equals(status)
+                && !WorkflowStatus.IN_SCOPE.equals(status) && !WorkflowStatus.IN_RESEARCH.equals(status)
+                && !WorkflowStatus.IN_REPORT.equals(status)) {
+            throw new ResearchException("研究状态不允许取消");
+        }
+
+        // 尚未开始的任务直接出队收尾；执行中的任务由执行节点中断后走流程收尾
+        if (researchTaskExecutor.cancelQueued(researchId)) {
+            // 保留范围分析阶段与检查点恢复带来的 token 累计，入队前的写入可能晚于上面的读取
+            ResearchSessionDO queued = researchSessionMapper.selectById(researchId);
+            researchSessionMapper.updateSession(researchId, WorkflowStatus.CANCELLED, false, true,
+                    ObjectUtil.defaultIfNull(queued.getTotalInputTokens(), 0L),
+                    ObjectUtil.defaultIfNull(queued.getTotalOutputTokens(), 0L));
+            eventPublisher.publishEvent(researchId, EventType.ERROR, "研究已取消", null);
+            // 已完成范围分析、在研究队列中等待的任务留有检查点
+            checkpointStore.delete(researchId);
+            agentPipeline.release(researchId, WorkflowStatus.CANCELLED);
+            return;
+        }
+        researchRunRegistry.requestCancel(researchId);
+    }
+
     private Long requireUserId() {
         Long userId = UserContext.getUserId();
         if (userId == null) {
@@ -270,19 +281,4 @@ public class ResearchServiceImpl implements ResearchService {
         }
         return userId;
     }
-
-    private ResearchProperties.Model resolveModelConfig(String requestedModelId) {
-        ResearchProperties.Model model = researchProperties.getModel();
-        if (model == null) {
-            throw new ResearchException("研究模型未配置");
-        }
-        String configuredId = StringUtils.hasText(model.getId()) ? model.getId() : "default";
-        if (StringUtils.hasText(requestedModelId) && !StrUtil.equals(requestedModelId, configuredId)) {
-            throw new ResearchException("模型不存在或未配置");
-        }
-        if (!StringUtils.hasText(model.getModel()) || !StringUtils.hasText(model.getApiKey())) {
-            throw new ResearchException("研究模型配置不完整");
-        }
-        return model;
-    }
 }
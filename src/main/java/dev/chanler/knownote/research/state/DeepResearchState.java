@@ -7,6 +7,9 @@ import dev.langchain4j.data.message.ChatMessage;
 import lombok.Builder;
 import lombok.Data;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -18,6 +21,8 @@ import java.util.Map;
 public class DeepResearchState {
 
     private String researchId;
+    private Long userId;
+    private String modelId;
     private List<ChatMessage> chatHistory;
     private String status;
 
@@ -25,11 +30,16 @@ public class DeepResearchState {
     private ScopeSchema.ResearchQuestion researchQuestion;
     private String researchBrief;
 
+    private String budgetName;
     private ResearchProperties.BudgetLevel budget;
 
     private Integer supervisorIterations;
     private Integer conductCount;
     private List<String> supervisorNotes;
+    // researchTopic -> compressedResearch，已完成的研究单元
+    private LinkedHashMap<String, String> completedUnits;
+    // 从检查点恢复时为已完成的阶段，否则为 null
+    private String resumePhase;
 
     private String researchTopic;
     private Integer researcherIterations;
@@ -52,4 +62,71 @@ public class DeepResearchState {
 
     private Long totalInputTokens;
     private Long totalOutputTokens;
+
+    /**
+     * 派生单个研究单元的独立状态，避免并发单元共享 Researcher/Search 字段
+     */
+    public DeepResearchState forkResearchUnit(String researchTopic, Long researchEventId) {
+        return DeepResearchState.builder()
+                .researchId(researchId)
+                .userId(userId)
+                .modelId(modelId)
+                .status(status)
+                .researchBrief(researchBrief)
+                .budgetName(budgetName)
+                .budget(budget)
+                .researchTopic(researchTopic)
+                .researcherIterations(0)
+                .searchCount(0)
+                .researcherNotes(new ArrayList<>())
+                .searchResults(new HashMap<>())
+                .searchNotes(new ArrayList<>())
+                .currentSupervisorEventId(currentSupervisorEventId)
+                .currentResearchEventId(researchEventId)
+                .totalInputTokens(0L)
+                .totalOutputTokens(0L)
+                .build();
+    }
+
+    /**
+     * 生成检查点，phase 为刚完成的阶段
+     */
+    public ResearchCheckpoint toCheckpoint(String phase) {
+        return ResearchCheckpoint.builder()
+                .phase(phase)
+                .researchBrief(researchBrief)
+                .supervisorIterations(supervisorIterations)
+                .conductCount(conductCount)
+                .supervisorNotes(new ArrayList<>(supervisorNotes))
+                .completedUnits(new LinkedHashMap<>(completedUnits))
+                .currentSupervisorEventId(currentSupervisorEventId)
+                .totalInputTokens(totalInputTokens)
+                .totalOutputTokens(totalOutputTokens)
+                .build();
+    }
+
+    /**
+     * 从检查点恢复已完成阶段的产出与 Token 累计
+     */
+    public void restore(ResearchCheckpoint checkpoint) {
+        resumePhase = checkpoint.getPhase();
+        status = checkpoint.getPhase();
+        researchBrief = checkpoint.getResearchBrief();
+        researchQuestion = new ScopeSchema.ResearchQuestion(checkpoint.getResearchBrief());
+        supervisorIterations = checkpoint.getSupervisorIterations();
+        conductCount = checkpoint.getConductCount();
+        supervisorNotes = new ArrayList<>(checkpoint.getSupervisorNotes());
+        completedUnits = new LinkedHashMap<>(checkpoint.getCompletedUnits());
+        currentSupervisorEventId = checkpoint.getCurrentSupervisorEventId();
+        totalInputTokens = checkpoint.getTotalInputTokens();
+        totalOutputTokens = checkpoint.getTotalOutputTokens();
+    }
+
+    /**
+     * 合并研究单元消耗的 Token
+     */
+    public void mergeTokenUsage(DeepResearchState unitState) {
+        totalInputTokens += unitState.getTotalInputTokens();
+        totalOutputTokens += unitState.getTotalOutputTokens();
+    }
 }
@@ -0,0 +1,34 @@
+package dev.chanler.knownote.research.state;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * 研究检查点：已完成阶段的产出与已完成研究单元的压缩结果
+ * <p>
+ * phase 为最近完成的阶段，IN_SCOPE 表示范围分析已完成，IN_RESEARCH 表示研究阶段已完成
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResearchCheckpoint {
+
+    private String phase;
+    private String researchBrief;
+
+    private Integer supervisorIterations;
+    private Integer conductCount;
+    private List<String> supervisorNotes;
+    // researchTopic -> compressedResearch，按完成顺序
+    private LinkedHashMap<String, String> completedUnits;
+    private Long currentSupervisorEventId;
+
+    private Long totalInputTokens;
+    private Long totalOutputTokens;
+}
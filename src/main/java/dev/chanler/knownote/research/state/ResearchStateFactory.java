@@ -0,0 +1,85 @@
+package dev.chanler.knownote.research.state;
+
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import dev.chanler.knownote.config.ResearchProperties;
+import dev.chanler.knownote.research.data.WorkflowStatus;
+import dev.chanler.knownote.research.domain.entity.ChatMessageDO;
+import dev.chanler.knownote.research.domain.mapper.ChatMessageMapper;
+import dev.chanler.knownote.research.exception.ResearchException;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * 研究状态构建：解析模型配置，按会话历史初始化 DeepResearchState
+ */
+@Component
+@RequiredArgsConstructor
+public class ResearchStateFactory {
+
+    private final ChatMessageMapper chatMessageMapper;
+    private final ResearchProperties researchProperties;
+
+    public DeepResearchState create(String researchId, Long userId, String modelId,
+                                    String budgetName, ResearchProperties.BudgetLevel budgetLevel) {
+        LambdaQueryWrapper<ChatMessageDO> historyQuery = Wrappers.lambdaQuery(ChatMessageDO.class)
+                .eq(ChatMessageDO::getResearchId, researchId)
+                .orderByAsc(ChatMessageDO::getSequenceNo);
+        List<ChatMessageDO> dbMessages = chatMessageMapper.selectList(historyQuery);
+
+        List<ChatMessage> chatHistory = new ArrayList<>();
+        for (ChatMessageDO msg : dbMessages) {
+            if ("user".equals(msg.getRole())) {
+                chatHistory.add(UserMessage.from(msg.getContent()));
+            } else if ("assistant".equals(msg.getRole())) {
+                chatHistory.add(AiMessage.from(msg.getContent()));
+            }
+        }
+
+        return DeepResearchState.builder()
+                .researchId(researchId)
+                .userId(userId)
+                .modelId(modelId)
+                .chatHistory(chatHistory)
+                .status(WorkflowStatus.QUEUE)
+                .budgetName(budgetName)
+                .budget(budgetLevel)
+                .supervisorIterations(0)
+                .conductCount(0)
+                .supervisorNotes(new ArrayList<>())
+                .completedUnits(new LinkedHashMap<>())
+                .researcherIterations(0)
+                .searchCount(0)
+                .researcherNotes(new ArrayList<>())
+                .searchResults(new HashMap<>())
+                .searchNotes(new ArrayList<>())
+                .totalInputTokens(0L)
+                .totalOutputTokens(0L)
+                .build();
+    }
+
+    public ResearchProperties.Model resolveModelConfig(String requestedModelId) {
+        ResearchProperties.Model model = researchProperties.getModel();
+        if (model == null) {
+            throw new ResearchException("研究模型未配置");
+        }
+        String configuredId = StringUtils.hasText(model.getId()) ? model.getId() : "default";
+        if (StringUtils.hasText(requestedModelId) && !StrUtil.equals(requestedModelId, configuredId)) {
+            throw new ResearchException("模型不存在或未配置");
+        }
+        if (!StringUtils.hasText(model.getModel()) || !StringUtils.hasText(model.getApiKey())) {
+            throw new ResearchException("研究模型配置不完整");
+        }
+        return model;
+    }
+}
@@ -1,14 +1,23 @@
 package dev.chanler.knownote.research.workflow;
 
+import dev.chanler.knownote.common.async.QueueLane;
 import dev.chanler.knownote.common.async.QueuedAsync;
+import dev.chanler.knownote.common.async.ResearchDurationEstimator;
+import dev.chanler.knownote.common.async.ResearchJob;
+import dev.chanler.knownote.common.async.ResearchRunRegistry;
+import dev.chanler.knownote.common.async.ResearchTaskExecutor;
 import dev.chanler.knownote.common.sse.SseHub;
+import dev.chanler.knownote.common.util.CacheUtil;
 import dev.chanler.knownote.common.util.EventPublisher;
+import dev.chanler.knownote.common.util.ResearchCheckpointStore;
 import dev.chanler.knownote.common.util.SequenceUtil;
 import dev.chanler.knownote.research.agent.ScopeAgent;
 import dev.chanler.knownote.research.agent.SupervisorAgent;
 import dev.chanler.knownote.research.agent.ReportAgent;
 import dev.chanler.knownote.research.data.EventType;
+import dev.chanler.knownote.config.ResearchProperties;
 import dev.chanler.knownote.research.data.WorkflowStatus;
+import dev.chanler.knownote.research.exception.ResearchException;
 import dev.chanler.knownote.research.exception.WorkflowException;
 import dev.chanler.knownote.research.model.ModelHandler;
 import dev.chanler.knownote.research.state.DeepResearchState;
@@ -17,6 +26,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+
 /**
  * 研究流程编排器
  */
@@ -32,39 +43,104 @@ public class AgentPipeline {
     private final ResearchSessionMapper researchSessionMapper;
     private final EventPublisher eventPublisher;
     private final ModelHandler modelHandler;
+    private final CacheUtil cacheUtil;
+    private final ResearchDurationEstimator durationEstimator;
+    private final ResearchRunRegistry researchRunRegistry;
+    private final ResearchProperties researchProperties;
+    private final ResearchCheckpointStore checkpointStore;
+    private final ResearchTaskExecutor researchTaskExecutor;
 
-    @QueuedAsync
+    /**
+     * 范围分析走快速通道，需要澄清的对话不进入研究队列；进入 IN_SCOPE 后转入研究队列
+     */
+    @QueuedAsync(lane = QueueLane.SCOPE)
     public void run(DeepResearchState state) {
         String researchId = state.getResearchId();
+        ResearchRunRegistry.Run run = researchRunRegistry.register(researchId, deadline(state));
+        boolean queued = false;
         try {
             state.setStatus(WorkflowStatus.START);
             updateResearchSession(researchId, WorkflowStatus.START, state);
-
-            scopeAgent.run(state);
-
-            String status = state.getStatus();
-            if (WorkflowStatus.FAILED.equals(status)) {
-                log.warn("Scope phase failed for researchId={}, status={} ", researchId, status);
-                eventPublisher.publishEvent(researchId, EventType.ERROR, "范围分析失败", null);
-                updateResearchSession(researchId, WorkflowStatus.FAILED, state);
-                return;
-            }
-            if (WorkflowStatus.NEED_CLARIFICATION.equals(status)) {
-                log.info("Scope phase requires clarification for researchId={}", researchId);
-                updateResearchSession(researchId, WorkflowStatus.NEED_CLARIFICATION, state);
+            if (!scope(state)) {
                 return;
             }
-            if (!WorkflowStatus.IN_SCOPE.equals(status)) {
-                log.warn("Unexpected status after Scope phase for researchId={}, status={}", researchId, status);
+            checkpointStore.save(researchId, state.toCheckpoint(WorkflowStatus.IN_SCOPE));
+            researchRunRegistry.checkpoint(researchId);
+
+            // 之后的阶段按检查点语义继续，保留首次开始时间
+            state.setResumePhase(WorkflowStatus.IN_SCOPE);
+            state.setStatus(WorkflowStatus.QUEUE);
+            updateResearchSession(researchId, WorkflowStatus.QUEUE, state);
+            try {
+                researchTaskExecutor.submit(job(state), () -> execute(state, false));
+                queued = true;
+            } catch (ResearchException e) {
+                // 研究队列拒绝：已满或预计等待过长
                 state.setStatus(WorkflowStatus.FAILED);
-                eventPublisher.publishEvent(researchId, EventType.ERROR, "范围分析状态异常", "status=" + status);
+                eventPublisher.publishEvent(researchId, EventType.ERROR, e.getMessage(), null);
                 updateResearchSession(researchId, WorkflowStatus.FAILED, state);
-                return;
+                log.warn("Research queue rejected researchId={}, reason={}", researchId, e.getMessage());
+            }
+        } catch (Exception e) {
+            fail(researchId, state, e);
+        } finally {
+            // 研究队列可能已开始执行并重新登记，只注销范围分析阶段的登记
+            researchRunRegistry.unregister(researchId, run);
+            Thread.interrupted();
+            if (queued) {
+                // 研究队列可能在其他节点执行，刷出本节点的时间线并清理本地序号状态
+                cacheUtil.flush();
+                sequenceUtil.reset(researchId);
+            } else {
+                checkpointStore.delete(researchId);
+                release(researchId, state.getStatus());
+            }
+        }
+    }
+
+    /**
+     * 同步执行研究流程，供已出队的任务直接调用；有检查点时从中断处恢复
+     */
+    public void execute(DeepResearchState state) {
+        execute(state, true);
+    }
+
+    private void execute(DeepResearchState state, boolean announceResume) {
+        String researchId = state.getResearchId();
+        ResearchRunRegistry.Run run = researchRunRegistry.register(researchId, deadline(state));
+        boolean handedOff = false;
+        try {
+            state.setStatus(WorkflowStatus.START);
+            updateResearchSession(researchId, WorkflowStatus.START, state);
+
+            // 从检查点恢复时跳过已完成的阶段
+            String resumePhase = state.getResumePhase();
+            boolean scopeDone = resumePhase != null;
+            boolean researchDone = WorkflowStatus.IN_RESEARCH.equals(resumePhase);
+            if (scopeDone) {
+                if (announceResume) {
+                    log.info("Resuming researchId={} from checkpoint, phase={}", researchId, resumePhase);
+                    eventPublisher.publishEvent(researchId, EventType.SCOPE, "已从中断处恢复研究", null);
+                }
+                state.setStatus(WorkflowStatus.IN_SCOPE);
+            } else {
+                if (!scope(state)) {
+                    return;
+                }
+                checkpointStore.save(researchId, state.toCheckpoint(WorkflowStatus.IN_SCOPE));
             }
 
-            supervisorAgent.run(state);
+            // 耗时样本只统计范围分析之后的完整执行，从检查点恢复的运行只有部分耗时，不计入
+            boolean resumed = announceResume && scopeDone;
+            long startMillis = System.currentTimeMillis();
+            researchRunRegistry.checkpoint(researchId);
+            if (researchDone) {
+                state.setStatus(WorkflowStatus.IN_RESEARCH);
+            } else {
+                supervisorAgent.run(state);
+            }
 
-            status = state.getStatus();
+            String status = state.getStatus();
             if (WorkflowStatus.FAILED.equals(status)) {
                 log.warn("Supervisor phase failed for researchId={}, status={}", researchId, status);
                 eventPublisher.publishEvent(researchId, EventType.ERROR, "研究规划失败", null);
@@ -79,6 +155,11 @@ public class AgentPipeline {
                 return;
             }
 
+            if (!researchDone) {
+                checkpointStore.save(researchId, state.toCheckpoint(WorkflowStatus.IN_RESEARCH));
+            }
+
+            researchRunRegistry.checkpoint(researchId);
             reportAgent.run(state);
 
             status = state.getStatus();
@@ -98,30 +179,130 @@ public class AgentPipeline {
 
             state.setStatus(WorkflowStatus.COMPLETED);
             updateResearchSession(researchId, WorkflowStatus.COMPLETED, state);
+            if (!resumed) {
+                durationEstimator.complete(researchId, state.getBudgetName(), state.getModelId(),
+                        System.currentTimeMillis() - startMillis);
+            }
             log.info("Final report generated for researchId={}", researchId);
-        } catch (WorkflowException e) {
+        } catch (Exception e) {
+            handedOff = fail(researchId, state, e);
+        } finally {
+            researchRunRegistry.unregister(researchId, run);
+            Thread.interrupted();
+            if (handedOff) {
+                suspend(researchId);
+            } else {
+                checkpointStore.delete(researchId);
+                release(researchId, state.getStatus());
+            }
+        }
+    }
+
+    /**
+     * 范围分析阶段，进入 IN_SCOPE 返回 true，其余结果已写入会话
+     */
+    private boolean scope(DeepResearchState state) {
+        String researchId = state.getResearchId();
+        scopeAgent.run(state);
+
+        String status = state.getStatus();
+        if (WorkflowStatus.FAILED.equals(status)) {
+            log.warn("Scope phase failed for researchId={}, status={} ", researchId, status);
+            eventPublisher.publishEvent(researchId, EventType.ERROR, "范围分析失败", null);
+            updateResearchSession(researchId, WorkflowStatus.FAILED, state);
+            return false;
+        }
+        if (WorkflowStatus.NEED_CLARIFICATION.equals(status)) {
+            log.info("Scope phase requires clarification for researchId={}", researchId);
+            updateResearchSession(researchId, WorkflowStatus.NEED_CLARIFICATION, state);
+            return false;
+        }
+        if (!WorkflowStatus.IN_SCOPE.equals(status)) {
+            log.warn("Unexpected status after Scope phase for researchId={}, status={}", researchId, status);
+            state.setStatus(WorkflowStatus.FAILED);
+            eventPublisher.publishEvent(researchId, EventType.ERROR, "范围分析状态异常", "status=" + status);
+            updateResearchSession(researchId, WorkflowStatus.FAILED, state);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 异常收尾，返回是否因节点下线交还给其他节点
+     */
+    private boolean fail(String researchId, DeepResearchState state, Exception e) {
+        // 取消与超时表现为中断或检查点异常，先清除中断标记再收尾写库
+        String cancelReason = researchRunRegistry.cancelReason(researchId);
+        Thread.interrupted();
+        if (ResearchRunRegistry.REASON_DRAIN.equals(cancelReason)) {
+            // 节点下线：会话保持 START，由接手节点从最近的检查点继续
+            log.info("Research handed off for researchId={}, status={}", researchId, state.getStatus());
+            return true;
+        }
+        if (cancelReason != null) {
+            abort(researchId, state, cancelReason);
+        } else if (e instanceof WorkflowException) {
             state.setStatus(WorkflowStatus.FAILED);
             eventPublisher.publishEvent(researchId, EventType.ERROR,
                     "研究过程中发生错误", null);
             updateResearchSession(researchId, WorkflowStatus.FAILED, state);
             log.error("Workflow failed for researchId={}, error={}", researchId, e.getMessage(), e);
-        } catch (Exception e) {
+        } else {
             state.setStatus(WorkflowStatus.FAILED);
             eventPublisher.publishEvent(researchId, EventType.ERROR,
                     "系统错误，请稍后重试", null);
             updateResearchSession(researchId, WorkflowStatus.FAILED, state);
             log.error("Unexpected error for researchId={}", researchId, e);
-        } finally {
-            sequenceUtil.reset(researchId);
-            sseHub.complete(researchId, state.getStatus());
-            modelHandler.removeModel(researchId);
         }
+        return false;
+    }
+
+    private ResearchJob job(DeepResearchState state) {
+        int cost = state.getBudget() != null ? state.getBudget().getCost() : 1;
+        return new ResearchJob(state.getResearchId(), state.getUserId(), state.getBudgetName(), state.getModelId(), cost);
+    }
+
+    /**
+     * 结束研究：刷出时间线、删除序号计数器与取消标记、关闭 SSE 并释放模型
+     */
+    public void release(String researchId, String status) {
+        cacheUtil.flush();
+        sequenceUtil.remove(researchId);
+        researchRunRegistry.clearCancel(researchId);
+        sseHub.complete(researchId, status);
+        modelHandler.removeModel(researchId);
+    }
+
+    /**
+     * 交接给其他节点：保留检查点与 SSE 连接，连接由下线流程通知客户端重连
+     */
+    private void suspend(String researchId) {
+        cacheUtil.flush();
+        sequenceUtil.reset(researchId);
+        modelHandler.removeModel(researchId);
+    }
+
+    private void abort(String researchId, DeepResearchState state, String cancelReason) {
+        boolean timeout = ResearchRunRegistry.REASON_TIMEOUT.equals(cancelReason);
+        String status = timeout ? WorkflowStatus.FAILED : WorkflowStatus.CANCELLED;
+        state.setStatus(status);
+        eventPublisher.publishEvent(researchId, EventType.ERROR,
+                timeout ? "研究超过时限，已终止" : "研究已取消", null);
+        updateResearchSession(researchId, status, state);
+        log.info("Research aborted for researchId={}, reason={}", researchId, cancelReason);
+    }
+
+    private Duration deadline(DeepResearchState state) {
+        int minutes = state.getBudget() != null ? state.getBudget().getTimeoutMinutes() : 0;
+        return Duration.ofMinutes(minutes > 0 ? minutes : researchProperties.getAsync().getTaskTimeoutMinutes());
     }
 
     private void updateResearchSession(String researchId, String status, DeepResearchState state) {
-        boolean setStartTime = WorkflowStatus.START.equals(status);
+        // 恢复执行保留首次开始时间
+        boolean setStartTime = WorkflowStatus.START.equals(status) && state.getResumePhase() == null;
         boolean setCompleteTime = WorkflowStatus.COMPLETED.equals(status)
                 || WorkflowStatus.FAILED.equals(status)
+                || WorkflowStatus.CANCELLED.equals(status)
                 || WorkflowStatus.NEED_CLARIFICATION.equals(status);
         researchSessionMapper.updateSession(researchId, status, setStartTime, setCompleteTime,
                 state.getTotalInputTokens(), state.getTotalOutputTokens());
@@ -0,0 +1,146 @@
+package dev.chanler.knownote.research.workflow;
+
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import dev.chanler.knownote.common.async.QueuedAsyncAspect;
+import dev.chanler.knownote.common.async.ResearchJob;
+import dev.chanler.knownote.common.async.ResearchJobHandler;
+import dev.chanler.knownote.common.async.ResearchJobQueue;
+import dev.chanler.knownote.common.async.ResearchTaskExecutor;
+import dev.chanler.knownote.common.util.ResearchCheckpointStore;
+import dev.chanler.knownote.config.ResearchProperties;
+import dev.chanler.knownote.research.data.WorkflowStatus;
+import dev.chanler.knownote.research.domain.entity.ResearchSessionDO;
+import dev.chanler.knownote.research.domain.mapper.ResearchSessionMapper;
+import dev.chanler.knownote.research.model.ModelHandler;
+import dev.chanler.knownote.research.state.DeepResearchState;
+import dev.chanler.knownote.research.state.ResearchCheckpoint;
+import dev.chanler.knownote.research.state.ResearchStateFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 研究任务恢复：由其他节点提交、宕机重投或下线交还的任务，按会话记录重建状态后执行
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ResearchResumeHandler implements ResearchJobHandler {
+
+    private static final String RECONCILE_LOCK = "research:queue:reconcile";
+
+    private final ResearchSessionMapper researchSessionMapper;
+    private final ResearchProperties researchProperties;
+    private final ResearchStateFactory researchStateFactory;
+    private final ModelHandler modelHandler;
+    private final AgentPipeline agentPipeline;
+    private final QueuedAsyncAspect queuedAsyncAspect;
+    private final ResearchTaskExecutor researchTaskExecutor;
+    private final ResearchJobQueue researchJobQueue;
+    private final ResearchCheckpointStore checkpointStore;
+    private final ObjectProvider<RedissonClient> redissonClient;
+
+    @Override
+    public Runnable restore(String researchId) {
+        ResearchSessionDO session = researchSessionMapper.selectById(researchId);
+        if (session == null || !isResumable(session.getStatus())) {
+            return null;
+        }
+        try {
+            ResearchProperties.Model modelConfig = researchStateFactory.resolveModelConfig(session.getModelId());
+            ResearchProperties.BudgetLevel budgetLevel = researchProperties.getBudget().getLevel(session.getBudget());
+            if (budgetLevel == null) {
+                log.warn("研究预算配置不存在，无法恢复 researchId={}, budget={}", researchId, session.getBudget());
+                return null;
+            }
+            modelHandler.addModel(researchId, modelConfig);
+            DeepResearchState state = researchStateFactory.create(researchId, session.getUserId(), session.getModelId(),
+                    session.getBudget(), budgetLevel);
+            ResearchCheckpoint checkpoint = checkpointStore.load(researchId);
+            if (checkpoint != null) {
+                state.restore(checkpoint);
+                log.info("研究任务从检查点恢复 researchId={}, phase={}, completedUnits={}",
+                        researchId, checkpoint.getPhase(), state.getCompletedUnits().size());
+            }
+            return () -> {
+                try {
+                    agentPipeline.execute(state);
+                } catch (Exception e) {
+                    log.error("异步任务执行失败，researchId={}", researchId, e);
+                    queuedAsyncAspect.handleFailure(researchId, state, e);
+                }
+            };
+        } catch (Exception e) {
+            log.warn("研究任务恢复失败 researchId={}", researchId, e);
+            modelHandler.removeModel(researchId);
+            return null;
+        }
+    }
+
+    @Override
+    public ResearchJob describe(String researchId) {
+        ResearchSessionDO session = researchSessionMapper.selectById(researchId);
+        if (session == null || !isResumable(session.getStatus())) {
+            return null;
+        }
+        ResearchProperties.BudgetLevel budgetLevel = researchProperties.getBudget().getLevel(session.getBudget());
+        int cost = budgetLevel != null ? budgetLevel.getCost() : 1;
+        return new ResearchJob(researchId, session.getUserId(), session.getBudget(), session.getModelId(), cost);
+    }
+
+    /**
+     * 启动时补投：会话处于排队或已开始，但不在 Redis 队列中的任务
+     * <p>
+     * 多节点同时启动时由分布式锁保证只有一个节点执行
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcile() {
+        if (!researchTaskExecutor.isRedisQueue()) {
+            return;
+        }
+        RLock lock = redissonClient.getObject().getLock(RECONCILE_LOCK);
+        boolean locked = false;
+        try {
+            locked = lock.tryLock(0, 60, TimeUnit.SECONDS);
+            if (!locked) {
+                return;
+            }
+            List<ResearchSessionDO> sessions = researchSessionMapper.selectList(
+                    Wrappers.lambdaQuery(ResearchSessionDO.class)
+                            .select(ResearchSessionDO::getId, ResearchSessionDO::getUserId, ResearchSessionDO::getBudget)
+                            .in(ResearchSessionDO::getStatus, WorkflowStatus.QUEUE, WorkflowStatus.START));
+            int requeued = 0;
+            for (ResearchSessionDO session : sessions) {
+                ResearchProperties.BudgetLevel budgetLevel = researchProperties.getBudget().getLevel(session.getBudget());
+                int cost = budgetLevel != null ? budgetLevel.getCost() : 1;
+                if (!researchJobQueue.isQueuedOrProcessing(session.getId())
+                        && researchJobQueue.enqueue(session.getId(), session.getUserId(), cost) >= 0) {
+                    requeued++;
+                }
+            }
+            if (requeued > 0) {
+                log.info("启动补投研究任务 count={}", requeued);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("研究任务补投失败", e);
+        } finally {
+            if (locked) {
+                lock.unlock();
+            }
+        }
+    }
+
+    private boolean isResumable(String status) {
+        return WorkflowStatus.QUEUE.equals(status) || WorkflowStatus.START.equals(status);
+    }
+}
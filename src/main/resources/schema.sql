@@ -46,10 +46,21 @@ CREATE TABLE IF NOT EXISTS research_session (
     title               VARCHAR(256)    DEFAULT NULL COMMENT '研究标题',
     total_input_tokens  BIGINT UNSIGNED DEFAULT 0 COMMENT '累计输入Token数',
     total_output_tokens BIGINT UNSIGNED DEFAULT 0 COMMENT '累计输出Token数',
+    run_millis          BIGINT UNSIGNED DEFAULT NULL COMMENT '研究队列出队到完成的执行耗时(毫秒)，从检查点恢复的运行不记录',
     KEY idx_user_status (user_id, status),
     KEY idx_user_update (user_id, update_time DESC)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='研究会话';
 
+-- 迁移：已有部署补充 run_millis 列，可重复执行
+SET @ddl = IF(
+    (SELECT COUNT(*) FROM information_schema.COLUMNS
+     WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'research_session' AND COLUMN_NAME = 'run_millis') = 0,
+    'ALTER TABLE research_session ADD COLUMN run_millis BIGINT UNSIGNED DEFAULT NULL COMMENT ''研究队列出队到完成的执行耗时(毫秒)，从检查点恢复的运行不记录'' AFTER total_output_tokens',
+    'SELECT 1');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
 -- 聊天消息表
 CREATE TABLE IF NOT EXISTS chat_message (
     id              BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY COMMENT '消息ID',
@@ -0,0 +1,138 @@
+package dev.chanler.knownote.common.async;
+
+import dev.chanler.knownote.common.util.EventPublisher;
+import dev.chanler.knownote.config.ResearchProperties;
+import dev.chanler.knownote.research.model.ModelRateLimiter;
+import dev.chanler.knownote.research.model.ModelThrottle;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 研究执行器吞吐基准：模型调用以固定延迟的桩模型模拟，比较 platform 与 virtual 模式
+ * <p>
+ * 不依赖 Redis 与数据库，直接运行 main：参数依次为研究数、每个研究的模型调用数、单次调用延迟毫秒
+ */
+public class ResearchExecutorBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int researches = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int calls = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        long latencyMs = args.length > 2 ? Long.parseLong(args[2]) : 200;
+        System.out.printf("researches=%d, callsPerResearch=%d, latencyMs=%d%n", researches, calls, latencyMs);
+        // 先各跑一轮预热，不计结果
+        run("platform", Math.min(researches, 20), 1, latencyMs, false);
+        run("virtual", Math.min(researches, 20), 1, latencyMs, false);
+        run("platform", researches, calls, latencyMs, true);
+        run("virtual", researches, calls, latencyMs, true);
+        System.exit(0);
+    }
+
+    private static void run(String mode, int researches, int calls, long latencyMs, boolean report) throws Exception {
+        ResearchProperties props = properties(mode, researches);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ModelThrottle modelThrottle = new ModelThrottle(props, meterRegistry, new ModelRateLimiter(null, null));
+        StubChatModel stub = new StubChatModel(latencyMs);
+        ChatModel model = modelThrottle.wrap(props.getModel(), stub);
+        ResearchTaskExecutor executor = new ResearchTaskExecutor(props, new SilentEventPublisher(), null, null, null,
+                new ResearchDurationEstimator(props, null), null, meterRegistry, modelThrottle);
+        executor.init();
+
+        CountDownLatch done = new CountDownLatch(researches);
+        ChatRequest request = ChatRequest.builder().messages(UserMessage.from("benchmark")).build();
+        long start = System.nanoTime();
+        for (int i = 0; i < researches; i++) {
+            String researchId = mode + "-" + i;
+            executor.submit(new ResearchJob(researchId, (long) i, "medium", props.getModel().getId(), 1), () -> {
+                try {
+                    for (int c = 0; c < calls; c++) {
+                        model.chat(request);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        long elapsedNanos = System.nanoTime() - start;
+        executor.destroy();
+        if (report) {
+            double seconds = elapsedNanos / 1e9;
+            System.out.printf("%-8s elapsed=%.2fs, researches/s=%.1f, modelCalls/s=%.1f, peakConcurrentCalls=%d%n",
+                    mode, seconds, researches / seconds, researches * (double) calls / seconds, stub.peak.get());
+        }
+    }
+
+    /**
+     * 与 application.yml 默认值一致的执行容量；关闭自适应上限并放开模型并发，只比较执行载体
+     */
+    private static ResearchProperties properties(String mode, int researches) {
+        ResearchProperties props = new ResearchProperties();
+        ResearchProperties.Async async = props.getAsync();
+        async.setMode(mode);
+        async.setMaxPoolSize(10);
+        async.setMaxActiveResearch(100);
+        async.setQueueCapacity(researches);
+        async.setMaxPredictedWaitMinutes(0);
+        async.setReapIntervalSeconds(3600);
+        props.getLimiter().setEnabled(false);
+        ResearchProperties.Model model = props.getModel();
+        model.setId("benchmark");
+        model.setMaxConcurrentRequests(Math.max(researches, 1));
+        return props;
+    }
+
+    /**
+     * 固定延迟的桩模型，记录并发调用峰值
+     */
+    private static class StubChatModel implements ChatModel {
+        private final long latencyMs;
+        private final AtomicInteger concurrent = new AtomicInteger();
+        private final AtomicInteger peak = new AtomicInteger();
+
+        StubChatModel(long latencyMs) {
+            this.latencyMs = latencyMs;
+        }
+
+        @Override
+        public ChatResponse doChat(ChatRequest chatRequest) {
+            peak.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            try {
+                TimeUnit.MILLISECONDS.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                concurrent.decrementAndGet();
+            }
+            return ChatResponse.builder()
+                    .aiMessage(AiMessage.from("ok"))
+                    .tokenUsage(new TokenUsage(100, 50))
+                    .build();
+        }
+    }
+
+    /**
+     * 不推送排队状态
+     */
+    private static class SilentEventPublisher extends EventPublisher {
+        SilentEventPublisher() {
+            super(null, null, null, null);
+        }
+
+        @Override
+        public void publishTempEvent(String researchId, String type, String title) {
+        }
+
+        @Override
+        public void publishTransientEvent(String researchId, String type, String title) {
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package dev.chanler.knownote.common.sse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.chanler.knownote.config.ResearchProperties;
+import dev.chanler.knownote.research.data.TimelineItem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 两个节点经同一 Redis 转发 SSE 消息；需要 Redis（REDIS_HOST/REDIS_PORT，默认 localhost:6379），不可用时跳过
+ */
+class SseClusterBridgeTest {
+
+    private LettuceConnectionFactory connectionFactory;
+    private SseClusterBridge nodeA;
+    private SseClusterBridge nodeB;
+
+    @BeforeEach
+    void setUp() {
+        String host = System.getenv().getOrDefault("REDIS_HOST", "localhost");
+        int port = Integer.parseInt(System.getenv().getOrDefault("REDIS_PORT", "6379"));
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(host, port));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        assumeTrue(redisAvailable(), "Redis 不可用，跳过跨节点转发测试");
+
+        ResearchProperties props = new ResearchProperties();
+        props.getSse().setCluster(true);
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        StringRedisTemplate template = new StringRedisTemplate(connectionFactory);
+        nodeA = new SseClusterBridge(props, connectionFactory, template, objectMapper);
+        nodeB = new SseClusterBridge(props, connectionFactory, template, objectMapper);
+        nodeA.init();
+        nodeB.init();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (nodeA != null) {
+            nodeA.destroy();
+        }
+        if (nodeB != null) {
+            nodeB.destroy();
+        }
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void fansOutToOtherNodeOnceSubscriptionIsConfirmed() throws Exception {
+        String researchId = UUID.randomUUID().toString();
+        BlockingQueue<SseClusterBridge.Envelope> receivedA = new LinkedBlockingQueue<>();
+        BlockingQueue<SseClusterBridge.Envelope> receivedB = new LinkedBlockingQueue<>();
+        nodeA.subscribe(researchId, receivedA::add).get(5, TimeUnit.SECONDS);
+        nodeB.subscribe(researchId, receivedB::add).get(5, TimeUnit.SECONDS);
+        nodeB.subscription(researchId).get(1, TimeUnit.SECONDS);
+
+        // 订阅确认后立即发布，不需要额外等待
+        nodeA.publishTimelineItem(researchId, TimelineItem.builder().kind("event").sequenceNo(7).build());
+        nodeA.publishComplete(researchId, "COMPLETED");
+
+        SseClusterBridge.Envelope timeline = receivedB.poll(5, TimeUnit.SECONDS);
+        assertNotNull(timeline);
+        assertEquals(SseClusterBridge.TYPE_TIMELINE, timeline.type());
+        assertEquals(7, timeline.item().getSequenceNo());
+        SseClusterBridge.Envelope complete = receivedB.poll(5, TimeUnit.SECONDS);
+        assertNotNull(complete);
+        assertEquals(SseClusterBridge.TYPE_COMPLETE, complete.type());
+        assertEquals("COMPLETED", complete.text());
+        // 发布节点忽略自己的消息
+        assertNull(receivedA.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void stopsDeliveringAfterUnsubscribe() throws Exception {
+        String researchId = UUID.randomUUID().toString();
+        BlockingQueue<SseClusterBridge.Envelope> receivedB = new LinkedBlockingQueue<>();
+        nodeB.subscribe(researchId, receivedB::add).get(5, TimeUnit.SECONDS);
+        nodeB.unsubscribe(researchId);
+
+        nodeA.publishReportStream(researchId, "3:1-0", "partial");
+
+        assertNull(receivedB.poll(500, TimeUnit.MILLISECONDS));
+        assertEquals(true, nodeB.subscription(researchId).isDone());
+    }
+
+    private boolean redisAvailable() {
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            return "PONG".equals(connection.ping());
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package dev.chanler.knownote.common.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.chanler.knownote.config.ResearchProperties;
+import dev.chanler.knownote.research.data.TimelineItem;
+import dev.chanler.knownote.research.domain.entity.ChatMessageDO;
+import dev.chanler.knownote.research.domain.entity.WorkflowEventDO;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 时间线编码基准：比较改造前的完整 JSON 与 TimelineCodec 各编码（json/smile，是否 LZ4）的体积与编解码吞吐
+ * <p>
+ * 不依赖 Redis，直接运行 main：参数依次为每项迭代次数、逗号分隔的正文字符数。
+ * 正文由同一句子重复构成，LZ4 压缩率高于真实报告，体积对比以未压缩变体为准
+ */
+public class TimelineCodecBenchmark {
+
+    private static final String RESEARCH_ID = "0f6c1a52-7d1e-4b7e-9f0a-3c2d8e5b1a90";
+    private static final String SENTENCE = "根据检索到的资料，该方案在高并发场景下的延迟分布明显收窄；"
+            + "The benchmark shows p99 latency dropping from 180ms to 95ms under 2k rps. ";
+
+    public static void main(String[] args) throws IOException {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        String[] sizes = (args.length > 1 ? args[1] : "200,2000,20000").split(",");
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        List<Variant> variants = List.of(
+                new Variant("json+lz4", codec(objectMapper, "json", 4096)),
+                new Variant("json", codec(objectMapper, "json", Integer.MAX_VALUE)),
+                new Variant("smile", codec(objectMapper, "smile", Integer.MAX_VALUE)),
+                new Variant("smile+lz4", codec(objectMapper, "smile", 4096)));
+        System.out.printf("iterations=%d, lz4 variants compress at >= 4096 bytes%n", iterations);
+        for (String size : sizes) {
+            int chars = Integer.parseInt(size.trim());
+            List<TimelineItem> items = items(chars);
+            System.out.printf("-- content=%d chars%n", chars);
+            measureLegacy(objectMapper, items, Math.min(iterations, 2000), false);
+            measureLegacy(objectMapper, items, iterations, true);
+            for (Variant variant : variants) {
+                measure(variant, items, Math.min(iterations, 2000), false);
+                measure(variant, items, iterations, true);
+            }
+        }
+    }
+
+    /**
+     * 改造前的写法：含 researchId 的完整 JSON，无头部与压缩
+     */
+    private static void measureLegacy(ObjectMapper objectMapper, List<TimelineItem> items, int iterations,
+                                      boolean report) throws IOException {
+        long bytes = 0;
+        List<byte[]> encoded = new ArrayList<>(items.size());
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            byte[] data = objectMapper.writeValueAsBytes(items.get(i % items.size()));
+            if (i < items.size()) {
+                encoded.add(data);
+                bytes += data.length;
+            }
+        }
+        long encodeNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            objectMapper.readValue(encoded.get(i % encoded.size()), TimelineItem.class);
+        }
+        long decodeNanos = System.nanoTime() - start;
+        if (report) {
+            print("legacy", bytes / encoded.size(), encodeNanos / iterations, decodeNanos / iterations);
+        }
+    }
+
+    private static void measure(Variant variant, List<TimelineItem> items, int iterations,
+                                boolean report) throws IOException {
+        long bytes = 0;
+        List<byte[]> encoded = new ArrayList<>(items.size());
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            byte[] data = variant.codec.encode(items.get(i % items.size()));
+            if (i < items.size()) {
+                encoded.add(data);
+                bytes += data.length;
+            }
+        }
+        long encodeNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            variant.codec.decode(RESEARCH_ID, encoded.get(i % encoded.size()));
+        }
+        long decodeNanos = System.nanoTime() - start;
+        if (report) {
+            print(variant.name, bytes / encoded.size(), encodeNanos / iterations, decodeNanos / iterations);
+        }
+    }
+
+    private static void print(String name, long avgBytes, long encodeNanos, long decodeNanos) {
+        System.out.printf("%-10s avgBytes=%-7d encode=%.2fus/op, decode=%.2fus/op%n",
+                name, avgBytes, encodeNanos / 1e3, decodeNanos / 1e3);
+    }
+
+    private static TimelineCodec codec(ObjectMapper objectMapper, String format, int compressThresholdBytes) {
+        ResearchProperties props = new ResearchProperties();
+        props.getTimeline().setCodec(format);
+        props.getTimeline().setCompressThresholdBytes(compressThresholdBytes);
+        TimelineCodec codec = new TimelineCodec(objectMapper, props);
+        codec.init();
+        return codec;
+    }
+
+    /**
+     * 一半消息、一半事件，正文为中英混排文本
+     */
+    private static List<TimelineItem> items(int chars) {
+        StringBuilder content = new StringBuilder(chars + SENTENCE.length());
+        while (content.length() < chars) {
+            content.append(SENTENCE);
+        }
+        String text = content.substring(0, chars);
+        List<TimelineItem> items = new ArrayList<>(64);
+        for (int i = 1; i <= 64; i++) {
+            TimelineItem.TimelineItemBuilder builder = TimelineItem.builder().researchId(RESEARCH_ID).sequenceNo(i);
+            if (i % 2 == 0) {
+                builder.kind("message").message(ChatMessageDO.builder()
+                        .id((long) i).researchId(RESEARCH_ID).role("assistant")
+                        .content(i + text).sequenceNo(i).createTime(LocalDateTime.now()).build());
+            } else {
+                builder.kind("event").event(WorkflowEventDO.builder()
+                        .id((long) i).researchId(RESEARCH_ID).type("RESEARCH").title("研究单元 " + i)
+                        .content(i + text).parentEventId((long) i - 1).sequenceNo(i).createTime(LocalDateTime.now()).build());
+            }
+            items.add(builder.build());
+        }
+        return items;
+    }
+
+    private record Variant(String name, TimelineCodec codec) {
+    }
+}
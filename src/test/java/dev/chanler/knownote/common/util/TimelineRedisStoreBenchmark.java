@@ -0,0 +1,132 @@
+package dev.chanler.knownote.common.util;
+
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.zset.DefaultTuple;
+import org.springframework.data.redis.connection.zset.Tuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 时间线 Redis 往返基准：比较逐条命令（ZADD+EXPIRE、ZRANGEBYSCORE+EXPIRE、单次大 ZADD）与 TimelineRedisStore
+ * <p>
+ * 需要本地 Redis，直接运行 main：参数依次为 host、port、每项操作次数、回填条目数、条目字节数
+ */
+public class TimelineRedisStoreBenchmark {
+
+    private static final long TTL_SECONDS = 30 * 60;
+
+    public static void main(String[] args) {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 6379;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+        int backfill = args.length > 3 ? Integer.parseInt(args[3]) : 2000;
+        int valueBytes = args.length > 4 ? Integer.parseInt(args[4]) : 512;
+
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(host, port));
+        factory.afterPropertiesSet();
+        StringRedisTemplate template = new StringRedisTemplate(factory);
+        TimelineRedisStore store = new TimelineRedisStore(template);
+        System.out.printf("iterations=%d, backfill=%d, valueBytes=%d%n", iterations, backfill, valueBytes);
+        try {
+            // 先各跑一轮预热，不计结果
+            runAll(template, store, Math.min(iterations, 500), Math.min(backfill, 200), valueBytes, false);
+            runAll(template, store, iterations, backfill, valueBytes, true);
+        } finally {
+            factory.destroy();
+        }
+    }
+
+    private static void runAll(StringRedisTemplate template, TimelineRedisStore store,
+                               int iterations, int backfill, int valueBytes, boolean report) {
+        String baselineId = "bench-baseline-" + System.nanoTime();
+        String storeId = "bench-store-" + System.nanoTime();
+        byte[] baselineKey = key(baselineId);
+
+        long start = System.nanoTime();
+        for (int i = 1; i <= iterations; i++) {
+            baselineAdd(template, baselineKey, List.of(new TimelineRedisStore.Entry(i, value(valueBytes))));
+        }
+        long baselineAdd = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 1; i <= iterations; i++) {
+            store.add(storeId, List.of(new TimelineRedisStore.Entry(i, value(valueBytes))));
+        }
+        long storeAdd = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            baselineRange(template, baselineKey, iterations - 20, Double.POSITIVE_INFINITY);
+        }
+        long baselineRange = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            store.range(storeId, iterations - 20, Double.POSITIVE_INFINITY);
+        }
+        long storeRange = System.nanoTime() - start;
+
+        List<TimelineRedisStore.Entry> entries = new ArrayList<>(backfill);
+        for (int i = 1; i <= backfill; i++) {
+            entries.add(new TimelineRedisStore.Entry(-i, value(valueBytes)));
+        }
+        start = System.nanoTime();
+        baselineAdd(template, baselineKey, entries);
+        long baselineBulk = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        store.bulkLoad(storeId, entries, -backfill);
+        long storeBulk = System.nanoTime() - start;
+
+        template.delete(List.of(new String(baselineKey, StandardCharsets.UTF_8),
+                "research:" + storeId + ":timeline", "research:" + storeId + ":timeline:floor"));
+        if (report) {
+            print("add", iterations, baselineAdd, storeAdd);
+            print("range", iterations, baselineRange, storeRange);
+            System.out.printf("%-6s baseline=%.2fms, store=%.2fms%n", "bulk", baselineBulk / 1e6, storeBulk / 1e6);
+        }
+    }
+
+    /**
+     * 改造前的写入：ZADD 与 EXPIRE 各一次往返
+     */
+    private static void baselineAdd(StringRedisTemplate template, byte[] key, List<TimelineRedisStore.Entry> entries) {
+        Set<Tuple> tuples = new HashSet<>(entries.size() * 2);
+        for (TimelineRedisStore.Entry entry : entries) {
+            tuples.add(new DefaultTuple(entry.value(), entry.score()));
+        }
+        template.execute((RedisCallback<Long>) connection -> connection.zSetCommands().zAdd(key, tuples));
+        template.execute((RedisCallback<Boolean>) connection -> connection.keyCommands().expire(key, TTL_SECONDS));
+    }
+
+    /**
+     * 改造前的读取：ZRANGEBYSCORE 与 EXPIRE 各一次往返
+     */
+    private static void baselineRange(StringRedisTemplate template, byte[] key, double min, double max) {
+        template.execute((RedisCallback<Set<byte[]>>) connection -> connection.zSetCommands().zRangeByScore(key, min, max));
+        template.execute((RedisCallback<Boolean>) connection -> connection.keyCommands().expire(key, TTL_SECONDS));
+    }
+
+    private static void print(String name, int iterations, long baselineNanos, long storeNanos) {
+        System.out.printf("%-6s baseline=%.1fus/op, store=%.1fus/op%n",
+                name, baselineNanos / 1e3 / iterations, storeNanos / 1e3 / iterations);
+    }
+
+    private static byte[] key(String researchId) {
+        return ("research:" + researchId + ":timeline").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] value(int size) {
+        byte[] value = new byte[size];
+        ThreadLocalRandom.current().nextBytes(value);
+        return value;
+    }
+}
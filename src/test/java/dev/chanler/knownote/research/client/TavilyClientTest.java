@@ -0,0 +1,221 @@
+package dev.chanler.knownote.research.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import dev.chanler.knownote.config.TavilyProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * TavilyClient 对本地 HttpServer 桩的行为：缓存命中、相同查询合并、429/5xx 重试与取消
+ */
+class TavilyClientTest {
+
+    private static final String RESULT_BODY = """
+            {"results":[{"url":"https://example.com","title":"Example","content":"stub","score":0.9}]}
+            """;
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile HttpHandler handler;
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private TavilyClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.createContext("/search", exchange -> {
+            requests.incrementAndGet();
+            try (exchange) {
+                handler.handle(exchange);
+            } catch (IOException e) {
+                // 客户端取消后连接已断开
+            }
+        });
+        server.start();
+
+        TavilyProperties props = new TavilyProperties();
+        props.setApiKey("test");
+        props.setBaseUrl("http://127.0.0.1:" + server.getAddress().getPort());
+        props.setRequestTimeout(Duration.ofSeconds(5));
+        props.getRetry().setMaxRetries(2);
+        props.getRetry().setInitialBackoff(Duration.ofMillis(10));
+        props.getRetry().setMaxBackoff(Duration.ofMillis(50));
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        client = new TavilyClient(props, objectMapper);
+        client.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.destroy();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void servesRepeatedQueryFromCache() {
+        handler = exchange -> reply(exchange, 200, RESULT_BODY);
+
+        TavilyClient.TavilyResponse first = client.search("Java virtual threads", 3, "general", false);
+        // 大小写与空白不同的同一查询命中缓存
+        TavilyClient.TavilyResponse second = client.search("  java   VIRTUAL threads ", 3, null, false);
+
+        assertEquals(1, first.results().size());
+        assertEquals(first, second);
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void doesNotCacheEmptyResults() {
+        handler = exchange -> reply(exchange, 400, "{}");
+
+        assertTrue(client.search("bad request", 3, "general", false).results().isEmpty());
+        assertTrue(client.search("bad request", 3, "general", false).results().isEmpty());
+
+        // 400 不重试，空结果不缓存
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void coalescesConcurrentIdenticalQueries() throws Exception {
+        CountDownLatch arrived = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        handler = exchange -> {
+            arrived.countDown();
+            await(release);
+            reply(exchange, 200, RESULT_BODY);
+        };
+
+        List<CompletableFuture<TavilyClient.TavilyResponse>> futures = new ArrayList<>();
+        futures.add(client.searchAsync("single flight", 3, "news", false));
+        assertTrue(arrived.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 4; i++) {
+            futures.add(client.searchAsync("Single  Flight", 3, "NEWS", false));
+        }
+        release.countDown();
+
+        for (CompletableFuture<TavilyClient.TavilyResponse> future : futures) {
+            assertEquals(1, future.get(5, TimeUnit.SECONDS).results().size());
+        }
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void retriesOn429And5xx() {
+        AtomicInteger attempt = new AtomicInteger();
+        handler = exchange -> {
+            switch (attempt.incrementAndGet()) {
+                case 1 -> {
+                    exchange.getResponseHeaders().add("Retry-After", "0");
+                    reply(exchange, 429, "{}");
+                }
+                case 2 -> reply(exchange, 503, "{}");
+                default -> reply(exchange, 200, RESULT_BODY);
+            }
+        };
+
+        TavilyClient.TavilyResponse response = client.search("retry me", 3, "general", false);
+
+        assertEquals(1, response.results().size());
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    void givesUpAfterMaxRetries() {
+        handler = exchange -> reply(exchange, 500, "{}");
+
+        assertTrue(client.search("always failing", 3, "general", false).results().isEmpty());
+
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    void cancelOfOneCallerKeepsSharedRequestForOthers() throws Exception {
+        CountDownLatch arrived = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        handler = exchange -> {
+            arrived.countDown();
+            await(release);
+            reply(exchange, 200, RESULT_BODY);
+        };
+
+        CompletableFuture<TavilyClient.TavilyResponse> abandoned = client.searchAsync("shared", 3, "general", false);
+        CompletableFuture<TavilyClient.TavilyResponse> kept = client.searchAsync("shared", 3, "general", false);
+        assertTrue(arrived.await(5, TimeUnit.SECONDS));
+        abandoned.cancel(true);
+        release.countDown();
+
+        assertEquals(1, kept.get(5, TimeUnit.SECONDS).results().size());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void cancelOfAllCallersStopsRetriesAndStartsFreshRequest() throws Exception {
+        CountDownLatch arrived = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        handler = exchange -> {
+            arrived.countDown();
+            await(release);
+            reply(exchange, 503, "{}");
+        };
+
+        CompletableFuture<TavilyClient.TavilyResponse> future = client.searchAsync("cancel me", 3, "general", false);
+        assertTrue(arrived.await(5, TimeUnit.SECONDS));
+        assertTrue(future.cancel(true));
+        release.countDown();
+
+        // 放弃后的 503 不再重试
+        TimeUnit.MILLISECONDS.sleep(300);
+        assertEquals(1, requests.get());
+
+        // 已放弃的请求不被复用，新的调用方发起新请求
+        handler = exchange -> reply(exchange, 200, RESULT_BODY);
+        TavilyClient.TavilyResponse response = client.search("cancel me", 3, "general", false);
+        assertFalse(response.results().isEmpty());
+        assertEquals(2, requests.get());
+    }
+
+    private static void reply(HttpExchange exchange, int status, String body) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}